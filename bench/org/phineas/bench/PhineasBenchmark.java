@@ -0,0 +1,68 @@
+package org.phineas.bench;
+
+/**
+ * A single operation to time at a given number of entities. Subclasses build
+ * their fixture in setUp, do one operation per call to run and clean up any
+ * shared engine state in tearDown.
+ * @author Sam Pottinger
+ */
+public abstract class PhineasBenchmark
+{
+	private final String name;
+	private final int maxSize;
+
+	/**
+	 * Creates a new benchmark that runs at every requested size
+	 * @param newName The name results are reported under
+	 */
+	public PhineasBenchmark(String newName)
+	{
+		this(newName, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Creates a new benchmark that is skipped above the given size
+	 * @param newName The name results are reported under
+	 * @param newMaxSize The largest entity count this benchmark can finish at
+	 */
+	public PhineasBenchmark(String newName, int newMaxSize)
+	{
+		name = newName;
+		maxSize = newMaxSize;
+	}
+
+	/**
+	 * Get the name this benchmark reports results under
+	 * @return Name of this benchmark
+	 */
+	public String getName()
+	{
+		return name;
+	}
+
+	/**
+	 * Get the largest entity count this benchmark runs at
+	 * @return Maximum size
+	 */
+	public int getMaxSize()
+	{
+		return maxSize;
+	}
+
+	/**
+	 * Build the fixture for one size
+	 * @param size Number of entities to operate on
+	 */
+	public abstract void setUp(int size) throws Exception;
+
+	/**
+	 * Perform one operation over every entity
+	 * @return Any value derived from the work so it can not be optimized away
+	 */
+	public abstract long run() throws Exception;
+
+	/**
+	 * Release the fixture and reset any shared state
+	 */
+	public void tearDown() throws Exception {}
+}
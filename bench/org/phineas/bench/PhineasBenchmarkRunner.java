@@ -0,0 +1,115 @@
+package org.phineas.bench;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.phineas.core.CoreBenchmarks;
+import org.phineas.core.DrawBenchmarks;
+import org.phineas.core.collision.CollisionBenchmarks;
+
+/**
+ * Command line runner for the Phineas benchmarks. Each benchmark is warmed up
+ * and then timed over several fixed length iterations at 1k, 10k and 100k
+ * entities. Run headless with -Djava.awt.headless=true.
+ *
+ * Usage: PhineasBenchmarkRunner [name filter] [comma separated sizes]
+ * @author Sam Pottinger
+ */
+public class PhineasBenchmarkRunner
+{
+	private static final int[] DEFAULT_SIZES = {1000, 10000, 100000};
+	private static final long WARMUP_NANOS = 1000L * 1000 * 1000;
+	private static final long ITERATION_NANOS = 1000L * 1000 * 1000;
+	private static final int ITERATIONS = 5;
+
+	private static long sink;
+
+	public static void main(String[] args) throws Exception
+	{
+		String filter = args.length > 0 ? args[0] : "";
+		int[] sizes = args.length > 1 ? parseSizes(args[1]) : DEFAULT_SIZES;
+		List<PhineasBenchmark> benchmarks = new ArrayList<PhineasBenchmark>();
+
+		benchmarks.addAll(CoreBenchmarks.getBenchmarks());
+		benchmarks.addAll(CollisionBenchmarks.getBenchmarks());
+		benchmarks.addAll(DrawBenchmarks.getBenchmarks());
+
+		System.out.println(String.format("%-28s %8s %14s %14s %14s",
+				"benchmark", "size", "ms/op", "+/- ms", "entities/s"));
+		for(PhineasBenchmark benchmark : benchmarks)
+		{
+			if(!benchmark.getName().contains(filter))
+				continue;
+			for(int size : sizes)
+			{
+				if(size <= benchmark.getMaxSize())
+					measure(benchmark, size);
+			}
+		}
+
+		// Keep the results alive
+		if(sink == 42)
+			System.out.println();
+	}
+
+	/**
+	 * Warm up and time one benchmark at one size, then print a line of results
+	 */
+	private static void measure(PhineasBenchmark benchmark, int size) throws Exception
+	{
+		double[] nanosPerOp = new double[ITERATIONS];
+		double mean = 0;
+		double variance = 0;
+
+		benchmark.setUp(size);
+		try
+		{
+			runFor(benchmark, WARMUP_NANOS);
+			for(int i = 0; i < ITERATIONS; i++)
+				nanosPerOp[i] = runFor(benchmark, ITERATION_NANOS);
+		}
+		finally
+		{
+			benchmark.tearDown();
+		}
+
+		for(double sample : nanosPerOp)
+			mean += sample / ITERATIONS;
+		for(double sample : nanosPerOp)
+			variance += (sample - mean) * (sample - mean) / ITERATIONS;
+
+		System.out.println(String.format("%-28s %8d %14.4f %14.4f %14.0f",
+				benchmark.getName(), size, mean / 1e6, Math.sqrt(variance) / 1e6, size * 1e9 / mean));
+	}
+
+	/**
+	 * Run operations until the time is up (always at least one)
+	 * @return Average nanoseconds per operation
+	 */
+	private static double runFor(PhineasBenchmark benchmark, long nanos) throws Exception
+	{
+		long start = System.nanoTime();
+		long elapsed;
+		long operations = 0;
+
+		do
+		{
+			sink += benchmark.run();
+			operations++;
+			elapsed = System.nanoTime() - start;
+		} while(elapsed < nanos);
+
+		return (double)elapsed / operations;
+	}
+
+	private static int[] parseSizes(String list)
+	{
+		String[] parts = list.split(",");
+		int[] sizes = new int[parts.length];
+		for(int i = 0; i < parts.length; i++)
+			sizes[i] = Integer.parseInt(parts[i].trim());
+		Arrays.sort(sizes);
+		return sizes;
+	}
+}
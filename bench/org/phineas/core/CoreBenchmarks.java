@@ -0,0 +1,145 @@
+package org.phineas.core;
+
+import java.awt.Color;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.phineas.bench.PhineasBenchmark;
+import org.phineas.contrib.PhineasRectangle;
+
+/**
+ * Benchmarks for entity registration, iteration and hit testing
+ * @author Sam Pottinger
+ */
+public class CoreBenchmarks
+{
+	static final int WORLD_WIDTH = 1024;
+	static final int WORLD_HEIGHT = 768;
+	static final int ENTITY_SIZE = 16;
+
+	/**
+	 * Get every core benchmark
+	 * @return New benchmark instances
+	 */
+	public static List<PhineasBenchmark> getBenchmarks()
+	{
+		List<PhineasBenchmark> benchmarks = new ArrayList<PhineasBenchmark>();
+
+		// Removal scans every drawable, so this is quadratic in the entity count
+		benchmarks.add(new PhineasBenchmark("stager.addRemove", 10000)
+		{
+			private List<PhineasRectangle> entities;
+
+			@Override
+			public void setUp(int size)
+			{
+				entities = createRectangles(size, new Random(1));
+			}
+
+			@Override
+			public long run()
+			{
+				GameEntityActionStager stager = GameEntityActionStager.getInstance();
+				GameModelManager manager = GameModelManager.getInstance();
+				long count;
+
+				for(PhineasRectangle entity : entities)
+					stager.addEntity(entity);
+				stager.completeAllStagedActions(manager);
+				count = manager.getDrawableCount();
+
+				for(PhineasRectangle entity : entities)
+					stager.removeEntity(entity);
+				stager.completeAllStagedActions(manager);
+				return count;
+			}
+
+			@Override
+			public void tearDown()
+			{
+				GameModelManager.getInstance().clear();
+			}
+		});
+
+		benchmarks.add(new PhineasBenchmark("model.iterateDrawables")
+		{
+			@Override
+			public void setUp(int size)
+			{
+				register(createRectangles(size, new Random(1)));
+			}
+
+			@Override
+			public long run()
+			{
+				long depthSum = 0;
+				for(PhineasDrawable drawable : GameModelManager.getInstance().getDrawables())
+					depthSum += drawable.getDepth();
+				return depthSum;
+			}
+
+			@Override
+			public void tearDown()
+			{
+				GameModelManager.getInstance().clear();
+			}
+		});
+
+		benchmarks.add(new PhineasBenchmark("boundable.hitTest")
+		{
+			private List<PhineasRectangle> entities;
+			private Random random;
+
+			@Override
+			public void setUp(int size)
+			{
+				entities = createRectangles(size, new Random(1));
+				random = new Random(2);
+			}
+
+			@Override
+			public long run()
+			{
+				BoundableHelper helper = BoundableHelper.getInstance();
+				int mouseX = random.nextInt(WORLD_WIDTH);
+				int mouseY = random.nextInt(WORLD_HEIGHT);
+				long hits = 0;
+
+				for(PhineasRectangle entity : entities)
+				{
+					if(helper.isInBounds(entity, mouseX, mouseY))
+						hits++;
+				}
+				return hits;
+			}
+		});
+
+		return benchmarks;
+	}
+
+	/**
+	 * Create rectangles scattered over the world at a mix of depths
+	 */
+	static List<PhineasRectangle> createRectangles(int count, Random random)
+	{
+		List<PhineasRectangle> rectangles = new ArrayList<PhineasRectangle>(count);
+		for(int i = 0; i < count; i++)
+		{
+			rectangles.add(new PhineasRectangle(random.nextInt(WORLD_WIDTH), random.nextInt(WORLD_HEIGHT),
+					ENTITY_SIZE, ENTITY_SIZE, new Color(random.nextInt()), random.nextInt(8)));
+		}
+		return rectangles;
+	}
+
+	/**
+	 * Add entities to the shared game model through the stager
+	 */
+	static void register(List<?> entities)
+	{
+		GameEntityActionStager stager = GameEntityActionStager.getInstance();
+		for(Object entity : entities)
+			stager.addEntity(entity);
+		stager.completeAllStagedActions(GameModelManager.getInstance());
+	}
+}
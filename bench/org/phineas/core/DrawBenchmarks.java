@@ -0,0 +1,119 @@
+package org.phineas.core;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.phineas.bench.PhineasBenchmark;
+import org.phineas.contrib.PhineasSprite;
+import org.phineas.contrib.PhineasText;
+
+/**
+ * Benchmarks for drawing a frame of sprites, rectangles or text through the
+ * renderer into an offscreen image, so they run without a display
+ * @author Sam Pottinger
+ */
+public class DrawBenchmarks
+{
+	/**
+	 * Get every draw benchmark
+	 * @return New benchmark instances
+	 */
+	public static List<PhineasBenchmark> getBenchmarks()
+	{
+		List<PhineasBenchmark> benchmarks = new ArrayList<PhineasBenchmark>();
+
+		benchmarks.add(new FrameBenchmark("draw.sprite")
+		{
+			@Override
+			protected List<PhineasDrawable> createDrawables(int size, Random random)
+			{
+				BufferedImage image = new BufferedImage(CoreBenchmarks.ENTITY_SIZE, CoreBenchmarks.ENTITY_SIZE,
+						BufferedImage.TYPE_INT_ARGB);
+				Graphics2D graphics = image.createGraphics();
+				graphics.setColor(Color.ORANGE);
+				graphics.fillOval(0, 0, CoreBenchmarks.ENTITY_SIZE, CoreBenchmarks.ENTITY_SIZE);
+				graphics.dispose();
+
+				List<PhineasDrawable> sprites = new ArrayList<PhineasDrawable>(size);
+				for(int i = 0; i < size; i++)
+				{
+					sprites.add(new PhineasSprite(random.nextInt(CoreBenchmarks.WORLD_WIDTH),
+							random.nextInt(CoreBenchmarks.WORLD_HEIGHT), image, random.nextInt(8)));
+				}
+				return sprites;
+			}
+		});
+
+		benchmarks.add(new FrameBenchmark("draw.rectangle")
+		{
+			@Override
+			protected List<PhineasDrawable> createDrawables(int size, Random random)
+			{
+				return new ArrayList<PhineasDrawable>(CoreBenchmarks.createRectangles(size, random));
+			}
+		});
+
+		benchmarks.add(new FrameBenchmark("draw.text")
+		{
+			@Override
+			protected List<PhineasDrawable> createDrawables(int size, Random random)
+			{
+				List<PhineasDrawable> texts = new ArrayList<PhineasDrawable>(size);
+				for(int i = 0; i < size; i++)
+				{
+					texts.add(new PhineasText(random.nextInt(CoreBenchmarks.WORLD_WIDTH),
+							random.nextInt(CoreBenchmarks.WORLD_HEIGHT), "Score " + (i % 100),
+							Color.WHITE, random.nextInt(8)));
+				}
+				return texts;
+			}
+		});
+
+		return benchmarks;
+	}
+
+	/**
+	 * Draws every registered drawable once per operation the same way the game
+	 * loop does
+	 */
+	private static abstract class FrameBenchmark extends PhineasBenchmark
+	{
+		private GameRenderer renderer;
+		private BufferedImage frame;
+
+		public FrameBenchmark(String name)
+		{
+			super(name);
+		}
+
+		protected abstract List<PhineasDrawable> createDrawables(int size, Random random);
+
+		@Override
+		public void setUp(int size)
+		{
+			CoreBenchmarks.register(createDrawables(size, new Random(1)));
+			renderer = new GameRenderer();
+			frame = new BufferedImage(CoreBenchmarks.WORLD_WIDTH, CoreBenchmarks.WORLD_HEIGHT,
+					BufferedImage.TYPE_INT_RGB);
+		}
+
+		@Override
+		public long run()
+		{
+			Graphics2D graphics = frame.createGraphics();
+			renderer.draw(GameModelManager.getInstance().getDrawables(), graphics);
+			graphics.dispose();
+			return frame.getRGB(0, 0);
+		}
+
+		@Override
+		public void tearDown()
+		{
+			GameModelManager.getInstance().clear();
+		}
+	}
+}
@@ -0,0 +1,72 @@
+package org.phineas.core;
+
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+
+import org.phineas.contrib.PhineasAnimatedSprite;
+import org.phineas.contrib.PhineasAnimation;
+import org.phineas.contrib.PhineasImageRegion;
+import org.phineas.contrib.PhineasRectangle;
+
+/**
+ * Smoke check that a world can be stepped without a display while its step
+ * listeners go through the PhineasGameFacade, the way game code usually
+ * does. Run with -Djava.awt.headless=true; exits with status 1 on failure.
+ * @author Sam Pottinger
+ */
+public class HeadlessWorldCheck
+{
+	private static final long STEP_MILLIS = 25;
+
+	public static void main(String[] args)
+	{
+		final PhineasWorld world = new PhineasWorld();
+		final long[] seenTime = new long[1];
+		final PhineasAnimation animation = new PhineasAnimation(
+				new PhineasImageRegion[] {new PhineasImageRegion(new BufferedImage(8, 8, BufferedImage.TYPE_INT_ARGB))},
+				new long[] {100}, true);
+
+		world.addEntity(new PhineasStepListener()
+		{
+			private boolean added;
+
+			@Override
+			public void onStep(long milliseconds)
+			{
+				PhineasGameFacade facade = PhineasGameFacade.getInstance();
+				seenTime[0] = facade.getGameTime();
+				if(!added)
+				{
+					facade.addEntity(new PhineasRectangle(0, 0, 8, 8, Color.WHITE));
+					facade.addEntity(new PhineasAnimatedSprite(0, 0, animation));
+					added = true;
+				}
+			}
+		});
+
+		try
+		{
+			world.step(STEP_MILLIS);
+			world.step(STEP_MILLIS);
+		}
+		catch(RuntimeException e)
+		{
+			fail("step failed: " + e);
+		}
+
+		if(seenTime[0] != STEP_MILLIS * 2)
+			fail("facade read game time " + seenTime[0] + " instead of the stepping world's " + STEP_MILLIS * 2);
+		if(world.getModelManager().getDrawableCount() != 2)
+			fail("entities added through the facade did not land in the stepping world");
+		if(PhineasWorld.getDefault().getModelManager().getDrawableCount() != 0)
+			fail("entities added through the facade landed in the default world");
+
+		System.out.println("Headless world check passed");
+	}
+
+	private static void fail(String message)
+	{
+		System.out.println("Headless world check failed: " + message);
+		System.exit(1);
+	}
+}
@@ -0,0 +1,83 @@
+package org.phineas.core.collision;
+
+import java.awt.Color;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.phineas.bench.PhineasBenchmark;
+import org.phineas.contrib.PhineasRectangle;
+
+/**
+ * Benchmarks for running collision tests on candidate pairs
+ * @author Sam Pottinger
+ */
+public class CollisionBenchmarks
+{
+	private static final int ENTITY_SIZE = 16;
+
+	/**
+	 * Strategy that checks if two rectangles' bounding boxes overlap
+	 */
+	private static class OverlapStrategy implements CollisionTestStrategy<PhineasRectangle, PhineasRectangle>
+	{
+		@Override
+		public boolean collided(InstancePair<PhineasRectangle, PhineasRectangle> pair)
+		{
+			PhineasRectangle a = pair.getFirst();
+			PhineasRectangle b = pair.getSecond();
+			return a.getX() < b.getX() + b.getWidth() && b.getX() < a.getX() + a.getWidth()
+					&& a.getY() < b.getY() + b.getHeight() && b.getY() < a.getY() + a.getHeight();
+		}
+	}
+
+	/**
+	 * Get every collision benchmark
+	 * @return New benchmark instances
+	 */
+	public static List<PhineasBenchmark> getBenchmarks()
+	{
+		List<PhineasBenchmark> benchmarks = new ArrayList<PhineasBenchmark>();
+
+		// Tests each entity against its neighbour in the list. Entities sit on a
+		// grid so no pair overlaps and only the test itself is timed.
+		benchmarks.add(new PhineasBenchmark("collision.testAndFire")
+		{
+			private PhineasRectangle[] entities;
+			private InternalCollisionTestBucket bucket;
+
+			@Override
+			@SuppressWarnings({ "unchecked", "rawtypes" })
+			public void setUp(int size)
+			{
+				entities = createGrid(size);
+				bucket = new InternalCollisionTestBucket(new CollisionTest(new OverlapStrategy(), null));
+			}
+
+			@Override
+			@SuppressWarnings({ "unchecked", "rawtypes" })
+			public long run()
+			{
+				for(int i = 1; i < entities.length; i++)
+					bucket.testAndFire(new InstancePair(entities[i - 1], entities[i], null));
+				return entities.length;
+			}
+		});
+
+		return benchmarks;
+	}
+
+	/**
+	 * Lay out rectangles on a grid with a gap between each
+	 */
+	private static PhineasRectangle[] createGrid(int count)
+	{
+		PhineasRectangle[] grid = new PhineasRectangle[count];
+		int columns = (int)Math.ceil(Math.sqrt(count));
+		for(int i = 0; i < count; i++)
+		{
+			grid[i] = new PhineasRectangle((i % columns) * ENTITY_SIZE * 2, (i / columns) * ENTITY_SIZE * 2,
+					ENTITY_SIZE, ENTITY_SIZE, Color.WHITE);
+		}
+		return grid;
+	}
+}
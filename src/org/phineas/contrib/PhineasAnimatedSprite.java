@@ -0,0 +1,169 @@
+package org.phineas.contrib;
+
+import java.awt.Graphics2D;
+import java.awt.Image;
+
+import org.phineas.core.PhineasBoundable;
+import org.phineas.core.PhineasDrawable;
+import org.phineas.core.PhineasPlaceable;
+import org.phineas.core.PhineasRenderState;
+import org.phineas.core.PhineasStatefulDrawable;
+import org.phineas.core.PhineasWorld;
+
+/**
+ * Sprite that plays a shared animation timeline. The current frame is worked out
+ * from the clock of the world being stepped or drawn, so animated sprites need
+ * no step listener.
+ * @author Sam Pottinger
+ */
+public class PhineasAnimatedSprite implements PhineasBoundable, PhineasPlaceable, PhineasStatefulDrawable
+{
+	private PhineasAnimation animation;
+	private PhineasRenderState renderState;
+	private long startTime;
+	private int depth;
+	private int x;
+	private int y;
+
+	/**
+	 * Creates a new sprite that starts playing the given animation now
+	 * @param newX The starting x position of this sprite
+	 * @param newY The starting y position of this sprite
+	 * @param newAnimation The timeline this sprite plays
+	 */
+	public PhineasAnimatedSprite(int newX, int newY, PhineasAnimation newAnimation)
+	{
+		this(newX, newY, newAnimation, PhineasDrawable.DEFAULT_DEPTH);
+	}
+
+	/**
+	 * Creates a new sprite that starts playing the given animation now
+	 * @param newX The starting x position of this sprite
+	 * @param newY The starting y position of this sprite
+	 * @param newAnimation The timeline this sprite plays
+	 * @param newDepth How far deep this sprite will be drawn (objects
+	 *                 of a deeper depth will be drawn first)
+	 */
+	public PhineasAnimatedSprite(int newX, int newY, PhineasAnimation newAnimation, int newDepth)
+	{
+		x = newX;
+		y = newY;
+		depth = newDepth;
+		setAnimation(newAnimation);
+	}
+
+	/**
+	 * Switch to a different animation, starting it from its first frame
+	 * @param newAnimation The timeline this sprite should play
+	 */
+	public void setAnimation(PhineasAnimation newAnimation)
+	{
+		animation = newAnimation;
+		restart();
+	}
+
+	/**
+	 * Get the animation this sprite is playing
+	 * @return The shared timeline this sprite plays
+	 */
+	public PhineasAnimation getAnimation()
+	{
+		return animation;
+	}
+
+	/**
+	 * Play the current animation again from its first frame
+	 */
+	public void restart()
+	{
+		startTime = PhineasWorld.getCurrent().getGameTime();
+	}
+
+	/**
+	 * Set when (in game time) this sprite's animation started. Useful for
+	 * offsetting sprites in a crowd so they don't all move in lock step.
+	 * @param newStartTime The game time in milliseconds the animation started at
+	 */
+	public void setStartTime(long newStartTime)
+	{
+		startTime = newStartTime;
+	}
+
+	/**
+	 * Get the frame that should currently be showing
+	 * @return Region of the animation's sprite sheet to draw
+	 */
+	private PhineasImageRegion getCurrentFrame()
+	{
+		return animation.getFrame(PhineasWorld.getCurrent().getGameTime() - startTime);
+	}
+
+	@Override
+	public void draw(Graphics2D target)
+	{
+		getCurrentFrame().draw(target, x, y);
+	}
+
+	@Override
+	public PhineasRenderState getRenderState()
+	{
+		Image image = getCurrentFrame().getImage();
+		if(renderState == null || renderState.getImage() != image)
+			renderState = new PhineasRenderState(null, null, null, image);
+		return renderState;
+	}
+
+	@Override
+	public Object getBatchKey()
+	{
+		return getRenderState();
+	}
+
+	@Override
+	public void drawStateless(Graphics2D target)
+	{
+		draw(target);
+	}
+
+	@Override
+	public int getDepth()
+	{
+		return depth;
+	}
+
+	@Override
+	public void setX(int newX)
+	{
+		x = newX;
+	}
+
+	@Override
+	public void setY(int newY)
+	{
+		y = newY;
+	}
+
+	@Override
+	public int getX()
+	{
+		return x;
+	}
+
+	@Override
+	public int getY()
+	{
+		return y;
+	}
+
+	@Override
+	public int getWidth()
+	{
+		return animation.getFrame(0).getWidth();
+	}
+
+	@Override
+	public int getHeight()
+	{
+		return animation.getFrame(0).getHeight();
+	}
+}
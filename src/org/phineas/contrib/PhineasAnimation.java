@@ -0,0 +1,152 @@
+package org.phineas.contrib;
+
+/**
+ * Immutable frame timeline that can be shared by any number of animated sprites
+ * @author Sam Pottinger
+ */
+public class PhineasAnimation
+{
+	private final PhineasImageRegion[] frames;
+	private final long[] frameEnds;
+	private final long totalDuration;
+	private final long uniformDuration;
+	private final boolean looping;
+
+	/**
+	 * Creates an animation that shows each frame for the same amount of time
+	 * @param sheet The sprite sheet to take frames from
+	 * @param firstFrame The index of the first frame of the animation on the sheet
+	 * @param frameCount How many consecutive frames of the sheet make up the animation
+	 * @param frameDuration How long each frame is shown for in milliseconds
+	 * @param newLooping If true, the animation starts over after its last frame.
+	 *                   Otherwise it stays on the last frame.
+	 */
+	public PhineasAnimation(PhineasSpriteSheet sheet, int firstFrame, int frameCount,
+			long frameDuration, boolean newLooping)
+	{
+		this(sliceSheet(sheet, firstFrame, frameCount), uniformDurations(frameCount, frameDuration),
+				newLooping);
+	}
+
+	/**
+	 * Creates an animation with per frame timing
+	 * @param newFrames The images to show in order
+	 * @param frameDurations How long each frame is shown for in milliseconds
+	 * @param newLooping If true, the animation starts over after its last frame.
+	 *                   Otherwise it stays on the last frame.
+	 */
+	public PhineasAnimation(PhineasImageRegion[] newFrames, long[] frameDurations, boolean newLooping)
+	{
+		long elapsed = 0;
+		boolean uniform = true;
+
+		if(newFrames.length == 0 || newFrames.length != frameDurations.length)
+			throw new IllegalArgumentException("Animations need one duration for each of at least one frame");
+
+		frames = newFrames.clone();
+		frameEnds = new long[frames.length];
+		for(int i = 0; i < frames.length; i++)
+		{
+			if(frameDurations[i] <= 0)
+				throw new IllegalArgumentException("Frame durations must be positive");
+			uniform = uniform && frameDurations[i] == frameDurations[0];
+			elapsed += frameDurations[i];
+			frameEnds[i] = elapsed;
+		}
+
+		totalDuration = elapsed;
+		uniformDuration = uniform ? frameDurations[0] : 0;
+		looping = newLooping;
+	}
+
+	/**
+	 * Figure out which frame is showing at the given point in the animation
+	 * @param elapsed The number of milliseconds since the animation started
+	 * @return Index of the frame to show
+	 */
+	public int getFrameIndex(long elapsed)
+	{
+		int low;
+		int high;
+		int middle;
+
+		if(elapsed < 0)
+			return 0;
+		if(elapsed >= totalDuration)
+		{
+			if(!looping)
+				return frames.length - 1;
+			elapsed %= totalDuration;
+		}
+
+		// Constant time for the common case
+		if(uniformDuration != 0)
+			return (int)(elapsed / uniformDuration);
+
+		// Find the first frame that ends after elapsed
+		low = 0;
+		high = frames.length - 1;
+		while(low < high)
+		{
+			middle = (low + high) >>> 1;
+			if(frameEnds[middle] <= elapsed)
+				low = middle + 1;
+			else
+				high = middle;
+		}
+		return low;
+	}
+
+	/**
+	 * Get the frame showing at the given point in the animation
+	 * @param elapsed The number of milliseconds since the animation started
+	 * @return Image region to draw
+	 */
+	public PhineasImageRegion getFrame(long elapsed)
+	{
+		return frames[getFrameIndex(elapsed)];
+	}
+
+	/**
+	 * Get how many frames are in this animation
+	 * @return Number of frames in this animation's timeline
+	 */
+	public int getFrameCount()
+	{
+		return frames.length;
+	}
+
+	/**
+	 * Get how long it takes to play this animation once
+	 * @return Total duration of all frames in milliseconds
+	 */
+	public long getDuration()
+	{
+		return totalDuration;
+	}
+
+	/**
+	 * Determine if this animation starts over after its last frame
+	 * @return true if looping, false if it holds on the last frame
+	 */
+	public boolean isLooping()
+	{
+		return looping;
+	}
+
+	private static PhineasImageRegion[] sliceSheet(PhineasSpriteSheet sheet, int firstFrame, int frameCount)
+	{
+		PhineasImageRegion[] regions = new PhineasImageRegion[frameCount];
+		for(int i = 0; i < frameCount; i++)
+			regions[i] = sheet.getFrame(firstFrame + i);
+		return regions;
+	}
+
+	private static long[] uniformDurations(int frameCount, long frameDuration)
+	{
+		long[] durations = new long[frameCount];
+		for(int i = 0; i < frameCount; i++)
+			durations[i] = frameDuration;
+		return durations;
+	}
+}
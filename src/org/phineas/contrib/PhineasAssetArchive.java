@@ -0,0 +1,242 @@
+package org.phineas.contrib;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+
+/**
+ * Read only, memory mapped bundle of pre-decoded images and sounds written by
+ * PhineasAssetPacker. Mount it on the sprite and sound loaders to have them read
+ * from the archive instead of decoding individual resources.
+ * @author Sam Pottinger
+ */
+public class PhineasAssetArchive
+{
+	static final int MAGIC = 0x50484E41; // "PHNA"
+	static final int VERSION = 1;
+	static final byte TYPE_IMAGE = 1;
+	static final byte TYPE_SOUND = 2;
+
+	private final MappedByteBuffer buffer;
+	private final Map<String, Entry> index;
+
+	/**
+	 * Location of a single asset within the archive
+	 */
+	private static class Entry
+	{
+		private final byte type;
+		private final int offset;
+		private final int length;
+
+		public Entry(byte newType, int newOffset, int newLength)
+		{
+			type = newType;
+			offset = newOffset;
+			length = newLength;
+		}
+	}
+
+	/**
+	 * Maps the given archive file into memory and reads its index
+	 * @param file The archive to open
+	 * @throws IOException Thrown if the file could not be mapped or is not an archive
+	 */
+	public PhineasAssetArchive(File file) throws IOException
+	{
+		RandomAccessFile input = new RandomAccessFile(file, "r");
+		try
+		{
+			FileChannel channel = input.getChannel();
+			buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		}
+		finally
+		{
+			// The mapping stays valid after the file is closed
+			input.close();
+		}
+
+		index = readIndex(buffer.duplicate());
+	}
+
+	/**
+	 * Parse the table of contents at the start of the archive
+	 */
+	private static Map<String, Entry> readIndex(ByteBuffer source) throws IOException
+	{
+		Map<String, Entry> newIndex = new HashMap<String, Entry>();
+		int count;
+		byte[] pathBytes;
+
+		if(source.getInt() != MAGIC)
+			throw new IOException("Not a Phineas asset archive");
+		if(source.getInt() != VERSION)
+			throw new IOException("Unsupported Phineas asset archive version");
+
+		count = source.getInt();
+		for(int i = 0; i < count; i++)
+		{
+			pathBytes = new byte[source.getShort() & 0xFFFF];
+			source.get(pathBytes);
+			newIndex.put(new String(pathBytes, "UTF-8"),
+					new Entry(source.get(), source.getInt(), source.getInt()));
+		}
+
+		return Collections.unmodifiableMap(newIndex);
+	}
+
+	/**
+	 * Get the locations of all of the assets in this archive
+	 * @return Unmodifiable set of asset locations
+	 */
+	public Set<String> getLocations()
+	{
+		return index.keySet();
+	}
+
+	/**
+	 * Determine if this archive has an image at the given location
+	 * @param loc The resource location the image was packed from
+	 * @return true if this archive holds that image
+	 */
+	public boolean hasImage(String loc)
+	{
+		Entry entry = index.get(loc);
+		return entry != null && entry.type == TYPE_IMAGE;
+	}
+
+	/**
+	 * Determine if this archive has a sound at the given location
+	 * @param loc The resource location the sound was packed from
+	 * @return true if this archive holds that sound
+	 */
+	public boolean hasSound(String loc)
+	{
+		Entry entry = index.get(loc);
+		return entry != null && entry.type == TYPE_SOUND;
+	}
+
+	/**
+	 * Read a pre-decoded image, copying its pixels straight out of the mapping
+	 * @param loc The resource location the image was packed from
+	 * @return ARGB image
+	 * @throws IOException Thrown if this archive has no such image
+	 */
+	public BufferedImage readImage(String loc) throws IOException
+	{
+		ByteBuffer data = getData(loc, TYPE_IMAGE);
+		int width = data.getInt();
+		int height = data.getInt();
+
+		BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+		int[] pixels = ((DataBufferInt)image.getRaster().getDataBuffer()).getData();
+		data.asIntBuffer().get(pixels);
+		return image;
+	}
+
+	/**
+	 * Open a stream over a sound's raw PCM without copying it out of the mapping
+	 * @param loc The resource location the sound was packed from
+	 * @return Stream of PCM frames
+	 * @throws IOException Thrown if this archive has no such sound
+	 */
+	public AudioInputStream openSound(String loc) throws IOException
+	{
+		ByteBuffer data = getData(loc, TYPE_SOUND);
+		AudioFormat format = new AudioFormat(data.getFloat(), data.getInt(), data.getInt(),
+				data.get() != 0, data.get() != 0);
+		long frameLength = data.getLong();
+
+		return new AudioInputStream(new ByteBufferInputStream(data.slice()), format, frameLength);
+	}
+
+	/**
+	 * Get a private view of an asset's bytes
+	 */
+	private ByteBuffer getData(String loc, byte type) throws IOException
+	{
+		Entry entry = index.get(loc);
+		if(entry == null || entry.type != type)
+			throw new IOException("Asset archive does not contain " + loc);
+
+		ByteBuffer data = buffer.duplicate();
+		data.position(entry.offset);
+		data.limit(entry.offset + entry.length);
+		return data.slice();
+	}
+
+	/**
+	 * Input stream that reads from a byte buffer
+	 */
+	private static class ByteBufferInputStream extends InputStream
+	{
+		private final ByteBuffer source;
+		private int mark;
+
+		public ByteBufferInputStream(ByteBuffer newSource)
+		{
+			source = newSource;
+		}
+
+		@Override
+		public int read()
+		{
+			return source.hasRemaining() ? source.get() & 0xFF : -1;
+		}
+
+		@Override
+		public int read(byte[] target, int offset, int length)
+		{
+			if(!source.hasRemaining())
+				return -1;
+			length = Math.min(length, source.remaining());
+			source.get(target, offset, length);
+			return length;
+		}
+
+		@Override
+		public long skip(long count)
+		{
+			int skipped = (int)Math.min(count, source.remaining());
+			source.position(source.position() + skipped);
+			return skipped;
+		}
+
+		@Override
+		public int available()
+		{
+			return source.remaining();
+		}
+
+		@Override
+		public boolean markSupported()
+		{
+			return true;
+		}
+
+		@Override
+		public synchronized void mark(int readLimit)
+		{
+			mark = source.position();
+		}
+
+		@Override
+		public synchronized void reset()
+		{
+			source.position(mark);
+		}
+	}
+}
@@ -0,0 +1,374 @@
+package org.phineas.contrib;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Thread safe least recently used cache that keeps the total size of its
+ * assets under a byte budget. Assets that have been acquired are never evicted
+ * until they are released. Lookups never lock, so loaders on many threads can
+ * hit the cache at once; only going over budget takes a lock, to pick what to
+ * evict.
+ * @author Sam Pottinger
+ */
+public class PhineasAssetCache<V>
+{
+	private static final int EVICTED = -1;
+
+	private final Weigher<V> weigher;
+	private final EvictionListener<V> evictionListener;
+	private final ConcurrentHashMap<String, Node<V>> entries;
+	private final Object evictionLock;
+	private final AtomicLong weightedSize;
+	private final AtomicLong pinnedWeight;
+	private final AtomicLong hits;
+	private final AtomicLong misses;
+	private final AtomicLong evictions;
+	private volatile long budget;
+
+	/**
+	 * Strategy for working out how many bytes an asset takes up
+	 */
+	public interface Weigher<V>
+	{
+		/**
+		 * Estimate the memory used by the given asset
+		 * @param value The asset to weigh
+		 * @return Approximate size of the asset in bytes
+		 */
+		public long weigh(V value);
+	}
+
+	/**
+	 * Interface for objects that release an asset's resources when it is evicted
+	 */
+	public interface EvictionListener<V>
+	{
+		/**
+		 * Called after an asset was dropped from the cache to stay within budget
+		 * @param key The location of the evicted asset
+		 * @param value The evicted asset
+		 */
+		public void onEviction(String key, V value);
+	}
+
+	/**
+	 * Cache bookkeeping for a single asset
+	 */
+	private static class Node<V>
+	{
+		private final V value;
+		private final long weight;
+
+		// Pins held on the asset, or EVICTED once it is on its way out
+		private final AtomicInteger references;
+		private volatile long lastUsed;
+
+		public Node(V newValue, long newWeight, int newReferences)
+		{
+			value = newValue;
+			weight = newWeight;
+			references = new AtomicInteger(newReferences);
+			lastUsed = System.nanoTime();
+		}
+
+	}
+
+	/**
+	 * Creates a new empty cache
+	 * @param newBudget The number of bytes this cache tries to stay under
+	 * @param newWeigher Strategy for working out the size of assets
+	 * @param newEvictionListener Listener to inform when assets are evicted (may be null)
+	 */
+	public PhineasAssetCache(long newBudget, Weigher<V> newWeigher, EvictionListener<V> newEvictionListener)
+	{
+		budget = newBudget;
+		weigher = newWeigher;
+		evictionListener = newEvictionListener;
+		entries = new ConcurrentHashMap<String, Node<V>>();
+		evictionLock = new Object();
+		weightedSize = new AtomicLong();
+		pinnedWeight = new AtomicLong();
+		hits = new AtomicLong();
+		misses = new AtomicLong();
+		evictions = new AtomicLong();
+	}
+
+	/**
+	 * Look up an asset, marking it as recently used
+	 * @param key The location of the asset
+	 * @return The cached asset or null if it is not in the cache
+	 */
+	public V get(String key)
+	{
+		Node<V> node = entries.get(key);
+		if(node == null || node.references.get() == EVICTED)
+		{
+			misses.incrementAndGet();
+			return null;
+		}
+		hits.incrementAndGet();
+		node.lastUsed = System.nanoTime();
+		return node.value;
+	}
+
+	/**
+	 * Add an asset to the cache unless one is already cached under the same key
+	 * @param key The location of the asset
+	 * @param value The asset to cache
+	 * @return The asset now cached under key (the existing one if there was one)
+	 */
+	public V putIfAbsent(String key, V value)
+	{
+		return insert(key, value, false);
+	}
+
+	/**
+	 * Add an asset to the cache unless one is already cached under the same key,
+	 * pinning whichever one ends up cached (see acquire)
+	 * @param key The location of the asset
+	 * @param value The asset to cache
+	 * @return The asset now cached under key (the existing one if there was one)
+	 */
+	public V putIfAbsentAndAcquire(String key, V value)
+	{
+		return insert(key, value, true);
+	}
+
+	/**
+	 * Pin a cached asset so that it will not be evicted while in use
+	 * @param key The location of the asset
+	 * @return The cached asset or null if it is not in the cache
+	 */
+	public V acquire(String key)
+	{
+		Node<V> node = entries.get(key);
+		if(node == null || !pin(node))
+		{
+			misses.incrementAndGet();
+			return null;
+		}
+		hits.incrementAndGet();
+		node.lastUsed = System.nanoTime();
+		return node.value;
+	}
+
+	/**
+	 * Unpin an asset pinned with acquire, making it available for eviction
+	 * once nothing else holds it
+	 * @param key The location of the asset
+	 */
+	public void release(String key)
+	{
+		Node<V> node = entries.get(key);
+		if(node == null)
+			return;
+		unpin(node);
+		evictToBudget();
+	}
+
+	/**
+	 * Change how many bytes this cache tries to stay under
+	 * @param newBudget The new budget in bytes
+	 */
+	public void setBudget(long newBudget)
+	{
+		budget = newBudget;
+		evictToBudget();
+	}
+
+	/**
+	 * Get how many bytes this cache tries to stay under
+	 * @return Budget in bytes
+	 */
+	public long getBudget()
+	{
+		return budget;
+	}
+
+	/**
+	 * Get the total size of everything in this cache
+	 * @return Sum of the weights of all cached assets in bytes
+	 */
+	public long getWeightedSize()
+	{
+		return weightedSize.get();
+	}
+
+	/**
+	 * Get how many assets are in this cache
+	 * @return Number of cached assets
+	 */
+	public int size()
+	{
+		return entries.size();
+	}
+
+	/**
+	 * Get how many lookups found their asset
+	 * @return Number of cache hits
+	 */
+	public long getHitCount()
+	{
+		return hits.get();
+	}
+
+	/**
+	 * Get how many lookups did not find their asset
+	 * @return Number of cache misses
+	 */
+	public long getMissCount()
+	{
+		return misses.get();
+	}
+
+	/**
+	 * Get how many assets have been dropped to stay within budget
+	 * @return Number of evictions
+	 */
+	public long getEvictionCount()
+	{
+		return evictions.get();
+	}
+
+	/**
+	 * Add an asset unless one is already cached under the same key
+	 */
+	private V insert(String key, V value, boolean pin)
+	{
+		Node<V> node = null;
+		Node<V> existing;
+
+		// Never evict the asset being handed back to the caller on the way in
+		while(true)
+		{
+			existing = entries.get(key);
+			if(existing != null)
+			{
+				if(pin(existing))
+				{
+					existing.lastUsed = System.nanoTime();
+					node = existing;
+					break;
+				}
+
+				// Being evicted, take its place
+				entries.remove(key, existing);
+				continue;
+			}
+
+			if(node == null)
+				node = new Node<V>(value, weigher.weigh(value), 1);
+			if(entries.putIfAbsent(key, node) == null)
+			{
+				weightedSize.addAndGet(node.weight);
+				pinnedWeight.addAndGet(node.weight);
+				break;
+			}
+		}
+
+		evictToBudget();
+		if(!pin)
+			unpin(node);
+		return node.value;
+	}
+
+	/**
+	 * Add a pin to a node unless it was already evicted
+	 * @return true if pinned
+	 */
+	private boolean pin(Node<V> node)
+	{
+		int current;
+		do
+		{
+			current = node.references.get();
+			if(current == EVICTED)
+				return false;
+		}
+		while(!node.references.compareAndSet(current, current + 1));
+
+		if(current == 0)
+			pinnedWeight.addAndGet(node.weight);
+		return true;
+	}
+
+	/**
+	 * Take away a pin from a node if it has one
+	 */
+	private void unpin(Node<V> node)
+	{
+		int current;
+		do
+		{
+			current = node.references.get();
+			if(current <= 0)
+				return;
+		}
+		while(!node.references.compareAndSet(current, current - 1));
+
+		if(current == 1)
+			pinnedWeight.addAndGet(-node.weight);
+	}
+
+	/**
+	 * Determine if dropping unpinned assets could bring the cache within budget
+	 * @return true if over budget with something left to evict
+	 */
+	private boolean canEvict()
+	{
+		long size = weightedSize.get();
+		return size > budget && size > pinnedWeight.get();
+	}
+
+	/**
+	 * Drop least recently used assets that are not pinned until the cache is
+	 * within budget (or only pinned assets are left)
+	 */
+	private void evictToBudget()
+	{
+		List<Map.Entry<String, Node<V>>> candidates;
+
+		// Pinned assets alone may be over budget; don't sort everything for nothing
+		if(!canEvict())
+			return;
+
+		synchronized(evictionLock)
+		{
+			if(!canEvict())
+				return;
+
+			candidates = new ArrayList<Map.Entry<String, Node<V>>>(entries.entrySet());
+			Collections.sort(candidates, new Comparator<Map.Entry<String, Node<V>>>()
+			{
+				@Override
+				public int compare(Map.Entry<String, Node<V>> a, Map.Entry<String, Node<V>> b)
+				{
+					return Long.compare(a.getValue().lastUsed, b.getValue().lastUsed);
+				}
+			});
+
+			for(Map.Entry<String, Node<V>> entry : candidates)
+			{
+				if(!canEvict())
+					break;
+
+				// Only claims nodes nobody holds, and stops anyone pinning them after
+				if(!entry.getValue().references.compareAndSet(0, EVICTED))
+					continue;
+
+				entries.remove(entry.getKey(), entry.getValue());
+				weightedSize.addAndGet(-entry.getValue().weight);
+				evictions.incrementAndGet();
+				if(evictionListener != null)
+					evictionListener.onEviction(entry.getKey(), entry.getValue().value);
+			}
+		}
+	}
+}
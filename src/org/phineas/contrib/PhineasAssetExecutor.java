@@ -0,0 +1,111 @@
+package org.phineas.contrib;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Bounded pool of daemon threads that Phineas loaders decode assets on
+ * @author Sam Pottinger
+ */
+class PhineasAssetExecutor
+{
+	private static final int MAX_THREADS = 4;
+
+	private static final PhineasAssetExecutor instance = new PhineasAssetExecutor();
+
+	private ExecutorService executor;
+
+	/**
+	 * Something that loads an asset into a loader's cache
+	 */
+	interface AssetTask<T>
+	{
+		/**
+		 * Load (and cache) the asset at the given location
+		 * @param loc The location of the asset
+		 * @return The loaded asset
+		 * @throws Exception Thrown if the asset could not be loaded
+		 */
+		public T load(String loc) throws Exception;
+	}
+
+	/**
+	 * Get access to a shared instance of this executor
+	 * @return Shared instance of this singleton
+	 */
+	public static PhineasAssetExecutor getInstance()
+	{
+		return instance;
+	}
+
+	/**
+	 * Private constructor for this singleton
+	 */
+	private PhineasAssetExecutor()
+	{
+		int threads = Math.max(1, Math.min(MAX_THREADS, Runtime.getRuntime().availableProcessors() - 1));
+		executor = Executors.newFixedThreadPool(threads, new ThreadFactory()
+		{
+			private AtomicInteger count = new AtomicInteger();
+
+			@Override
+			public Thread newThread(Runnable target)
+			{
+				Thread thread = new Thread(target, "phineas-asset-loader-" + count.incrementAndGet());
+				thread.setDaemon(true);
+				thread.setPriority(Thread.NORM_PRIORITY - 1);
+				return thread;
+			}
+		});
+	}
+
+	/**
+	 * Load all of the given assets in parallel
+	 * @param locs The locations of the assets to load
+	 * @param listener Listener to report progress to (may be null)
+	 * @param task What to do to load each asset
+	 * @return One future for each location, in the order given
+	 */
+	public <T> List<Future<T>> preload(Collection<String> locs, final PhineasPreloadListener listener,
+			final AssetTask<T> task)
+	{
+		final int total = locs.size();
+		final AtomicInteger completed = new AtomicInteger();
+		List<Future<T>> futures = new ArrayList<Future<T>>(total);
+
+		for(final String loc : locs)
+		{
+			futures.add(executor.submit(new Callable<T>()
+			{
+				@Override
+				public T call() throws Exception
+				{
+					T asset;
+					try
+					{
+						asset = task.load(loc);
+					}
+					catch(Exception e)
+					{
+						if(listener != null)
+							listener.onAssetFailed(loc, e, completed.incrementAndGet(), total);
+						throw e;
+					}
+
+					if(listener != null)
+						listener.onAssetLoaded(loc, completed.incrementAndGet(), total);
+					return asset;
+				}
+			}));
+		}
+
+		return futures;
+	}
+}
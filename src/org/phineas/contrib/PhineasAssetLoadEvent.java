@@ -0,0 +1,34 @@
+package org.phineas.contrib;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight Recorder event covering an image or sound being decoded (cache hits
+ * are not recorded)
+ * @author Sam Pottinger
+ */
+@Name("org.phineas.AssetLoad")
+@Label("Asset Load")
+@Category("Phineas")
+class PhineasAssetLoadEvent extends jdk.jfr.Event
+{
+	static final String KIND_IMAGE = "image";
+	static final String KIND_CLIP = "clip";
+	static final String KIND_SAMPLE = "sample";
+
+	@Label("Location")
+	String location;
+
+	@Label("Kind")
+	String kind;
+
+	@Label("From Archive")
+	boolean fromArchive;
+
+	@Label("Decoded Size")
+	@DataAmount
+	long bytes;
+}
@@ -0,0 +1,206 @@
+package org.phineas.contrib;
+
+import java.awt.image.BufferedImage;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.imageio.ImageIO;
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.UnsupportedAudioFileException;
+
+/**
+ * Build time tool that bundles images and sounds into a single archive of
+ * pre-decoded ARGB pixels and raw PCM that PhineasAssetArchive can map
+ * @author Sam Pottinger
+ */
+public class PhineasAssetPacker
+{
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	private List<String> locs;
+	private List<byte[]> payloads;
+	private List<Byte> types;
+
+	/**
+	 * Creates a new packer with nothing in it
+	 */
+	public PhineasAssetPacker()
+	{
+		locs = new ArrayList<String>();
+		payloads = new ArrayList<byte[]>();
+		types = new ArrayList<Byte>();
+	}
+
+	/**
+	 * Decodes an image file and queues it for packing
+	 * @param loc The resource location that loaders will ask for this image by
+	 * @param file The image file to read
+	 * @throws IOException Thrown if the image could not be read
+	 */
+	public void addImage(String loc, File file) throws IOException
+	{
+		BufferedImage image = ImageIO.read(file);
+		if(image == null)
+			throw new IOException("Could not decode image " + file);
+
+		int width = image.getWidth();
+		int height = image.getHeight();
+		int[] pixels = image.getRGB(0, 0, width, height, null, 0, width);
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(8 + pixels.length * 4);
+		DataOutputStream output = new DataOutputStream(bytes);
+		output.writeInt(width);
+		output.writeInt(height);
+		for(int pixel : pixels)
+			output.writeInt(pixel);
+		output.close();
+
+		add(loc, PhineasAssetArchive.TYPE_IMAGE, bytes.toByteArray());
+	}
+
+	/**
+	 * Decodes a sound file to PCM and queues it for packing
+	 * @param loc The resource location that loaders will ask for this sound by
+	 * @param file The sound file to read
+	 * @throws IOException Thrown if the sound could not be read
+	 * @throws UnsupportedAudioFileException Thrown if the sound is not in a known format
+	 */
+	public void addSound(String loc, File file) throws IOException, UnsupportedAudioFileException
+	{
+		AudioInputStream input = AudioSystem.getAudioInputStream(file);
+		AudioFormat format = input.getFormat();
+
+		// Store everything as PCM so loading never decodes
+		if(!format.getEncoding().equals(AudioFormat.Encoding.PCM_SIGNED)
+				&& !format.getEncoding().equals(AudioFormat.Encoding.PCM_UNSIGNED))
+		{
+			format = new AudioFormat(format.getSampleRate(), 16, format.getChannels(), true, false);
+			input = AudioSystem.getAudioInputStream(format, input);
+		}
+
+		ByteArrayOutputStream pcm = new ByteArrayOutputStream();
+		byte[] chunk = new byte[BUFFER_SIZE];
+		int read;
+		while((read = input.read(chunk)) != -1)
+			pcm.write(chunk, 0, read);
+		input.close();
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(pcm.size() + 32);
+		DataOutputStream output = new DataOutputStream(bytes);
+		output.writeFloat(format.getSampleRate());
+		output.writeInt(format.getSampleSizeInBits());
+		output.writeInt(format.getChannels());
+		output.writeByte(format.getEncoding().equals(AudioFormat.Encoding.PCM_SIGNED) ? 1 : 0);
+		output.writeByte(format.isBigEndian() ? 1 : 0);
+		output.writeLong(pcm.size() / format.getFrameSize());
+		pcm.writeTo(output);
+		output.close();
+
+		add(loc, PhineasAssetArchive.TYPE_SOUND, bytes.toByteArray());
+	}
+
+	/**
+	 * Writes all queued assets out as an archive
+	 * @param target The file to write the archive to
+	 * @throws IOException Thrown if the archive could not be written
+	 */
+	public void write(File target) throws IOException
+	{
+		List<byte[]> pathBytes = new ArrayList<byte[]>();
+		long offset;
+
+		// Work out where the data starts
+		offset = 12;
+		for(String loc : locs)
+		{
+			byte[] encoded = loc.getBytes("UTF-8");
+			pathBytes.add(encoded);
+			offset += 2 + encoded.length + 1 + 4 + 4;
+		}
+
+		DataOutputStream output = new DataOutputStream(new BufferedOutputStream(
+				new FileOutputStream(target), BUFFER_SIZE));
+		try
+		{
+			// Index
+			output.writeInt(PhineasAssetArchive.MAGIC);
+			output.writeInt(PhineasAssetArchive.VERSION);
+			output.writeInt(locs.size());
+			for(int i = 0; i < locs.size(); i++)
+			{
+				if(offset > Integer.MAX_VALUE)
+					throw new IOException("Asset archives are limited to 2GB");
+				output.writeShort(pathBytes.get(i).length);
+				output.write(pathBytes.get(i));
+				output.writeByte(types.get(i));
+				output.writeInt((int)offset);
+				output.writeInt(payloads.get(i).length);
+				offset += payloads.get(i).length;
+			}
+
+			// Data
+			for(byte[] payload : payloads)
+				output.write(payload);
+		}
+		finally
+		{
+			output.close();
+		}
+	}
+
+	private void add(String loc, byte type, byte[] payload)
+	{
+		locs.add(loc);
+		types.add(type);
+		payloads.add(payload);
+	}
+
+	/**
+	 * Packs every png, gif, jpg, wav, aiff and au file under a directory, using
+	 * paths relative to that directory as resource locations
+	 * @param args The directory to pack followed by the archive file to write
+	 */
+	public static void main(String[] args) throws Exception
+	{
+		if(args.length != 2)
+		{
+			System.err.println("Usage: PhineasAssetPacker <resource directory> <archive file>");
+			System.exit(1);
+		}
+
+		File root = new File(args[0]);
+		PhineasAssetPacker packer = new PhineasAssetPacker();
+		packer.addDirectory(root, "");
+		packer.write(new File(args[1]));
+	}
+
+	/**
+	 * Queue every supported file under the given directory
+	 */
+	private void addDirectory(File directory, String prefix) throws Exception
+	{
+		File[] children = directory.listFiles();
+		if(children == null)
+			return;
+
+		for(File child : children)
+		{
+			String loc = prefix + child.getName();
+			String name = child.getName().toLowerCase();
+			if(child.isDirectory())
+				addDirectory(child, loc + "/");
+			else if(name.endsWith(".png") || name.endsWith(".gif") || name.endsWith(".jpg"))
+				addImage(loc, child);
+			else if(name.endsWith(".wav") || name.endsWith(".aiff") || name.endsWith(".au"))
+				addSound(loc, child);
+		}
+	}
+}
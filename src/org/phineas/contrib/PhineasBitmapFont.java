@@ -0,0 +1,142 @@
+package org.phineas.contrib;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics2D;
+import java.awt.Transparency;
+import java.awt.image.BufferedImage;
+
+/**
+ * Small set of glyphs pre-rendered into a single image, for text that changes
+ * every frame (scores, timers) where laying out a string each time is too costly
+ * @note Characters outside of the font's character set are skipped
+ * @author Sam Pottinger
+ */
+public class PhineasBitmapFont
+{
+	public static final String NUMERIC_CHARACTERS = "0123456789:.,-+/%x ";
+
+	private static final int TABLE_SIZE = 128;
+
+	private final BufferedImage strip;
+	private final int[] glyphX;
+	private final int[] glyphWidth;
+	private final int ascent;
+	private final int height;
+
+	/**
+	 * Pre-renders the digits and common score / timer punctuation
+	 * @param font The font to render glyphs in
+	 * @param color The color to render glyphs in
+	 */
+	public PhineasBitmapFont(Font font, Color color)
+	{
+		this(font, color, NUMERIC_CHARACTERS);
+	}
+
+	/**
+	 * Pre-renders the given characters
+	 * @param font The font to render glyphs in
+	 * @param color The color to render glyphs in
+	 * @param characters The (ASCII) characters this font should be able to draw
+	 */
+	public PhineasBitmapFont(Font font, Color color, String characters)
+	{
+		Graphics2D graphics;
+		FontMetrics metrics;
+		int totalWidth;
+		int x;
+		char character;
+
+		glyphX = new int[TABLE_SIZE];
+		glyphWidth = new int[TABLE_SIZE];
+		for(int i = 0; i < TABLE_SIZE; i++)
+			glyphX[i] = -1;
+
+		// Measure
+		graphics = new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB).createGraphics();
+		metrics = graphics.getFontMetrics(font);
+		graphics.dispose();
+		ascent = metrics.getAscent();
+		height = Math.max(1, metrics.getAscent() + metrics.getDescent());
+		totalWidth = 0;
+		for(int i = 0; i < characters.length(); i++)
+			totalWidth += metrics.charWidth(characters.charAt(i));
+
+		// Render every glyph side by side
+		strip = PhineasImageUtil.createCompatibleImage(Math.max(1, totalWidth), height,
+				Transparency.TRANSLUCENT);
+		graphics = strip.createGraphics();
+		graphics.setFont(font);
+		graphics.setColor(color);
+		x = 0;
+		for(int i = 0; i < characters.length(); i++)
+		{
+			character = characters.charAt(i);
+			if(character >= TABLE_SIZE)
+				throw new IllegalArgumentException("Bitmap fonts only support ASCII characters");
+
+			graphics.drawString(String.valueOf(character), x, ascent);
+			glyphX[character] = x;
+			glyphWidth[character] = metrics.charWidth(character);
+			x += glyphWidth[character];
+		}
+		graphics.dispose();
+	}
+
+	/**
+	 * Draws the given text with its baseline starting at the given position
+	 * @param target The context to draw on
+	 * @param text The characters to draw
+	 * @param x The x coordinate the text starts at
+	 * @param baselineY The y coordinate of the text's baseline
+	 */
+	public void draw(Graphics2D target, CharSequence text, int x, int baselineY)
+	{
+		int top = baselineY - ascent;
+		int width;
+		int sourceX;
+		char character;
+
+		for(int i = 0; i < text.length(); i++)
+		{
+			character = text.charAt(i);
+			if(character >= TABLE_SIZE || glyphX[character] == -1)
+				continue;
+
+			sourceX = glyphX[character];
+			width = glyphWidth[character];
+			target.drawImage(strip, x, top, x + width, top + height,
+					sourceX, 0, sourceX + width, height, null);
+			x += width;
+		}
+	}
+
+	/**
+	 * Get how wide the given text would be when drawn in this font
+	 * @param text The characters to measure
+	 * @return Width in pixels
+	 */
+	public int getWidth(CharSequence text)
+	{
+		int width = 0;
+		char character;
+		for(int i = 0; i < text.length(); i++)
+		{
+			character = text.charAt(i);
+			if(character < TABLE_SIZE && glyphX[character] != -1)
+				width += glyphWidth[character];
+		}
+		return width;
+	}
+
+	/**
+	 * Get the image all of this font's glyphs are drawn from
+	 * @return Strip of pre-rendered glyphs
+	 */
+	public BufferedImage getImage()
+	{
+		return strip;
+	}
+}
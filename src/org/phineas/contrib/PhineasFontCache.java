@@ -0,0 +1,54 @@
+package org.phineas.contrib;
+
+import java.awt.Font;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Caching singleton factory that shares Font instances between text objects
+ * @author Sam Pottinger
+ */
+public class PhineasFontCache
+{
+	private static final PhineasFontCache instance = new PhineasFontCache();
+
+	private ConcurrentHashMap<String, Font> fonts;
+
+	/**
+	 * Get access to a shared instance of this font cache
+	 * @return Shared instance of this singleton
+	 */
+	public static PhineasFontCache getInstance()
+	{
+		return instance;
+	}
+
+	/**
+	 * Private constructor for this singleton
+	 */
+	private PhineasFontCache()
+	{
+		fonts = new ConcurrentHashMap<String, Font>();
+	}
+
+	/**
+	 * Get a shared font with the given attributes, creating it if this is
+	 * the first time it was asked for
+	 * @param name The font family or face name (like Font.SANS_SERIF)
+	 * @param style The style of the font (like Font.PLAIN or Font.BOLD)
+	 * @param size The point size of the font
+	 * @return Shared Font instance
+	 */
+	public Font getFont(String name, int style, int size)
+	{
+		String key = name + "/" + style + "/" + size;
+		Font font = fonts.get(key);
+		if(font == null)
+		{
+			Font newFont = new Font(name, style, size);
+			font = fonts.putIfAbsent(key, newFont);
+			if(font == null)
+				font = newFont;
+		}
+		return font;
+	}
+}
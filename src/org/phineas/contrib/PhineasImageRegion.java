@@ -0,0 +1,105 @@
+package org.phineas.contrib;
+
+import java.awt.Graphics2D;
+import java.awt.Image;
+
+/**
+ * Rectangular piece of a larger image such as a sprite atlas page or sprite sheet
+ * @author Sam Pottinger
+ */
+public class PhineasImageRegion
+{
+	private final Image image;
+	private final int x;
+	private final int y;
+	private final int width;
+	private final int height;
+	private final boolean wholeImage;
+
+	/**
+	 * Creates a region covering all of the given image
+	 * @param newImage The image this region covers
+	 */
+	public PhineasImageRegion(Image newImage)
+	{
+		this(newImage, 0, 0, newImage.getWidth(null), newImage.getHeight(null));
+	}
+
+	/**
+	 * Creates a region covering part of the given image
+	 * @param newImage The image this region is a part of
+	 * @param newX The x coordinate of the upper left corner of this region within the image
+	 * @param newY The y coordinate of the upper left corner of this region within the image
+	 * @param newWidth The width of this region in pixels
+	 * @param newHeight The height of this region in pixels
+	 */
+	public PhineasImageRegion(Image newImage, int newX, int newY, int newWidth, int newHeight)
+	{
+		image = newImage;
+		x = newX;
+		y = newY;
+		width = newWidth;
+		height = newHeight;
+		wholeImage = x == 0 && y == 0 && width == image.getWidth(null) && height == image.getHeight(null);
+	}
+
+	/**
+	 * Draws this region with its upper left corner at the given position
+	 * @param target The context to draw this region on
+	 * @param destX The x coordinate to draw the upper left corner of this region at
+	 * @param destY The y coordinate to draw the upper left corner of this region at
+	 */
+	public void draw(Graphics2D target, int destX, int destY)
+	{
+		if(wholeImage)
+			target.drawImage(image, destX, destY, null);
+		else
+			target.drawImage(image, destX, destY, destX + width, destY + height,
+					x, y, x + width, y + height, null);
+	}
+
+	/**
+	 * Get the image that this region is a part of
+	 * @return The atlas page, sprite sheet or stand alone image this region covers
+	 */
+	public Image getImage()
+	{
+		return image;
+	}
+
+	/**
+	 * Get the x coordinate of this region within its image
+	 * @return Horizontal offset from the left of the image in pixels
+	 */
+	public int getX()
+	{
+		return x;
+	}
+
+	/**
+	 * Get the y coordinate of this region within its image
+	 * @return Vertical offset from the top of the image in pixels
+	 */
+	public int getY()
+	{
+		return y;
+	}
+
+	/**
+	 * Get the width of this region
+	 * @return How wide this region is in pixels
+	 */
+	public int getWidth()
+	{
+		return width;
+	}
+
+	/**
+	 * Get the height of this region
+	 * @return How tall this region is in pixels
+	 */
+	public int getHeight()
+	{
+		return height;
+	}
+}
@@ -0,0 +1,34 @@
+package org.phineas.contrib;
+
+import java.awt.GraphicsEnvironment;
+import java.awt.image.BufferedImage;
+
+/**
+ * Common image routines for Phineas contrib classes
+ * @author Sam Pottinger
+ */
+class PhineasImageUtil
+{
+	/**
+	 * Create an image in the format of the default screen so drawing it stays on
+	 * the accelerated path, falling back to a plain ARGB image when headless
+	 * @param width The width of the new image in pixels
+	 * @param height The height of the new image in pixels
+	 * @param transparency One of the java.awt.Transparency constants
+	 * @return Newly created blank image
+	 */
+	public static BufferedImage createCompatibleImage(int width, int height, int transparency)
+	{
+		if(GraphicsEnvironment.isHeadless())
+			return new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+
+		return GraphicsEnvironment.
+				getLocalGraphicsEnvironment().
+				getDefaultScreenDevice().
+				getDefaultConfiguration().
+				createCompatibleImage(width, height, transparency);
+	}
+
+	private PhineasImageUtil()
+	{}
+}
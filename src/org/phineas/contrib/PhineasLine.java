@@ -5,12 +5,14 @@ import java.awt.Graphics2D;
 
 import org.phineas.core.PhineasBoundable;
 import org.phineas.core.PhineasDrawable;
+import org.phineas.core.PhineasRenderState;
+import org.phineas.core.PhineasStatefulDrawable;
 
 /**
  * Simple graphical line that integrates into the Phineas game framework
  * @author Sam Pottinger
  */
-public class PhineasLine implements PhineasBoundable, PhineasDrawable
+public class PhineasLine implements PhineasBoundable, PhineasStatefulDrawable
 {
 	private int smallerX;
 	private int smallerY;
@@ -22,6 +24,7 @@ public class PhineasLine implements PhineasBoundable, PhineasDrawable
 	private int endY;
 	private int depth;
 	private Color color;
+	private PhineasRenderState renderState;
 	
 	/**
 	 * Creates a new line between the given start and end coordinates
@@ -39,6 +42,7 @@ public class PhineasLine implements PhineasBoundable, PhineasDrawable
 		endY = newEndY;
 		color = newColor;
 		depth = PhineasDrawable.DEFAULT_DEPTH;
+		renderState = new PhineasRenderState(color, null, null, null);
 		
 		calculateBoundingBox();
 	}
@@ -62,6 +66,7 @@ public class PhineasLine implements PhineasBoundable, PhineasDrawable
 		endY = newEndY;
 		color = newColor;
 		depth = newDepth;
+		renderState = new PhineasRenderState(color, null, null, null);
 		
 		calculateBoundingBox();
 	}
@@ -81,6 +86,24 @@ public class PhineasLine implements PhineasBoundable, PhineasDrawable
 		target.setColor(color);
 		target.drawLine(startX, startY, endX, endY);
 	}
+	
+	@Override
+	public PhineasRenderState getRenderState()
+	{
+		return renderState;
+	}
+	
+	@Override
+	public Object getBatchKey()
+	{
+		return renderState;
+	}
+	
+	@Override
+	public void drawStateless(Graphics2D target)
+	{
+		target.drawLine(startX, startY, endX, endY);
+	}
 
 	@Override
 	public int getDepth()
@@ -0,0 +1,516 @@
+package org.phineas.contrib;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.LineUnavailableException;
+import javax.sound.sampled.SourceDataLine;
+
+/**
+ * Singleton software mixer that plays any number of overlapping sounds through a
+ * single SourceDataLine using a fixed pool of voices, so playing a sound never
+ * opens a line or allocates
+ * @author Sam Pottinger
+ */
+public class PhineasMixer
+{
+	public static final float SAMPLE_RATE = 44100;
+	public static final int VOICE_COUNT = 32;
+
+	private static final int CHUNK_FRAMES = 512;
+	private static final int CHUNK_BYTES = CHUNK_FRAMES * 4;
+	private static final int LINE_BUFFER_CHUNKS = 4;
+	private static final int INDEX_BITS = 8;
+	private static final int INDEX_MASK = (1 << INDEX_BITS) - 1;
+
+	private static final PhineasMixer instance = new PhineasMixer();
+
+	private final Voice[] voices;
+	private final List<Source> sources;
+	private volatile Thread mixingThread;
+	private volatile boolean running;
+	private volatile float masterVolume;
+
+	/**
+	 * Playback state for one of the mixer's fixed pool of voices
+	 */
+	private static class Voice
+	{
+		private volatile boolean active;
+		private volatile float volume;
+		private volatile float pitch;
+		private volatile float pan;
+		private PhineasPcmSample sample;
+		private boolean looping;
+		private double position;
+		private volatile int generation;
+	}
+
+	/**
+	 * Something other than a voice that produces audio for the mixer, like a
+	 * music stream
+	 */
+	interface Source
+	{
+		/**
+		 * Add this source's next frames to the mix (called on the mixing thread)
+		 * @param accumulator Interleaved left / right samples to add to
+		 * @param frames How many frames to add
+		 * @param master The master volume to scale by
+		 * @return false if this source is finished and should be removed
+		 */
+		public boolean mixInto(int[] accumulator, int frames, float master);
+
+		/**
+		 * Stop producing audio and let go of anything held, like a decoding
+		 * thread (called when the mixer stops)
+		 */
+		public void close();
+	}
+
+	/**
+	 * Get access to a shared instance of this mixer
+	 * @return Shared instance of this singleton
+	 */
+	public static PhineasMixer getInstance()
+	{
+		return instance;
+	}
+
+	/**
+	 * Private constructor for this singleton
+	 */
+	private PhineasMixer()
+	{
+		voices = new Voice[VOICE_COUNT];
+		for(int i = 0; i < VOICE_COUNT; i++)
+			voices[i] = new Voice();
+		sources = new CopyOnWriteArrayList<Source>();
+		masterVolume = 1;
+	}
+
+	/**
+	 * Opens the output line and starts the mixing thread. Called automatically
+	 * by play if the mixer has not been started.
+	 * @throws LineUnavailableException Thrown if no output line could be opened
+	 */
+	public synchronized void start() throws LineUnavailableException
+	{
+		if(running)
+			return;
+
+		AudioFormat format = new AudioFormat(SAMPLE_RATE, 16, 2, true, false);
+		final SourceDataLine line = AudioSystem.getSourceDataLine(format);
+		line.open(format, CHUNK_BYTES * LINE_BUFFER_CHUNKS);
+		line.start();
+
+		running = true;
+		mixingThread = new Thread("phineas-mixer")
+		{
+			public void run() {mixLoop(line);}
+		};
+		mixingThread.setDaemon(true);
+		mixingThread.setPriority(Thread.MAX_PRIORITY);
+		mixingThread.start();
+	}
+
+	/**
+	 * Stops all voices, ends the mixing thread and closes the output line
+	 */
+	public void stop()
+	{
+		Thread oldThread;
+		synchronized(this)
+		{
+			if(!running)
+				return;
+			running = false;
+			oldThread = mixingThread;
+			mixingThread = null;
+
+			// Cleared under the lock so a start racing this stop keeps what it adds
+			for(Voice voice : voices)
+				voice.active = false;
+			for(Source source : sources)
+				source.close();
+			sources.clear();
+		}
+
+		// The old thread drains and closes its own line on the way out
+		try
+		{
+			oldThread.join();
+		}
+		catch(InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Start playing a sample on a free voice
+	 * @param sample The decoded sound to play
+	 * @param volume The volume of the voice (0 is silent, 1 is full volume)
+	 * @param pitch Playback speed multiplier (2 is an octave up), must be positive
+	 * @param loop If true, the sample starts over until stopped
+	 * @return Handle for controlling the voice or -1 if every voice is busy
+	 *         or the output line could not be opened
+	 */
+	public int play(PhineasPcmSample sample, float volume, float pitch, boolean loop)
+	{
+		return play(sample, volume, pitch, 0, loop);
+	}
+
+	/**
+	 * Start playing a sample on a free voice, panned between the speakers
+	 * @param sample The decoded sound to play
+	 * @param volume The volume of the voice (0 is silent, 1 is full volume)
+	 * @param pitch Playback speed multiplier (2 is an octave up), must be positive
+	 * @param pan Position between the speakers (-1 is left, 0 is center, 1 is right)
+	 * @param loop If true, the sample starts over until stopped
+	 * @return Handle for controlling the voice or -1 if every voice is busy
+	 *         or the output line could not be opened
+	 */
+	public int play(PhineasPcmSample sample, float volume, float pitch, float pan, boolean loop)
+	{
+		checkVolume(volume);
+		checkPitch(pitch);
+		
+		if(!running)
+		{
+			try
+			{
+				start();
+			}
+			catch(LineUnavailableException e)
+			{
+				e.printStackTrace();
+				return -1;
+			}
+		}
+
+		synchronized(voices)
+		{
+			for(int i = 0; i < voices.length; i++)
+			{
+				Voice voice = voices[i];
+				if(voice.active)
+					continue;
+
+				voice.sample = sample;
+				voice.looping = loop;
+				voice.position = 0;
+				voice.volume = volume;
+				voice.pitch = pitch;
+				voice.pan = pan;
+				voice.generation = (voice.generation + 1) & (Integer.MAX_VALUE >> INDEX_BITS);
+				voice.active = true; // Publishes the fields above to the mixing thread
+				return (voice.generation << INDEX_BITS) | i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Have the mixer pull audio from the given source until it reports it is finished
+	 * @param source The source to mix in
+	 * @throws LineUnavailableException Thrown if the output line could not be opened
+	 */
+	synchronized void addSource(Source source) throws LineUnavailableException
+	{
+		start();
+		sources.add(source);
+	}
+
+	/**
+	 * Stop mixing in the given source
+	 * @param source The source to remove
+	 */
+	void removeSource(Source source)
+	{
+		sources.remove(source);
+	}
+
+	/**
+	 * Stop a voice early
+	 * @param handle The handle returned by play
+	 */
+	public void stopVoice(int handle)
+	{
+		Voice voice = getVoice(handle);
+		if(voice != null)
+			voice.active = false;
+	}
+
+	/**
+	 * Change the volume of a playing voice
+	 * @param handle The handle returned by play
+	 * @param volume The new volume (0 is silent, 1 is full volume)
+	 */
+	public void setVolume(int handle, float volume)
+	{
+		checkVolume(volume);
+		Voice voice = getVoice(handle);
+		if(voice != null)
+			voice.volume = volume;
+	}
+
+	/**
+	 * Change the pitch of a playing voice
+	 * @param handle The handle returned by play
+	 * @param pitch Playback speed multiplier (2 is an octave up), must be positive
+	 */
+	public void setPitch(int handle, float pitch)
+	{
+		checkPitch(pitch);
+		Voice voice = getVoice(handle);
+		if(voice != null)
+			voice.pitch = pitch;
+	}
+
+	/**
+	 * Move a playing voice between the speakers
+	 * @param handle The handle returned by play
+	 * @param pan Position between the speakers (-1 is left, 0 is center, 1 is right)
+	 */
+	public void setPan(int handle, float pan)
+	{
+		Voice voice = getVoice(handle);
+		if(voice != null)
+			voice.pan = pan;
+	}
+
+	/**
+	 * Determine if a voice is still playing
+	 * @param handle The handle returned by play
+	 * @return true if the voice has not finished or been stopped
+	 */
+	public boolean isPlaying(int handle)
+	{
+		return getVoice(handle) != null;
+	}
+
+	/**
+	 * Set the volume applied to everything this mixer plays
+	 * @param newMasterVolume Overall volume (0 is silent, 1 is full volume)
+	 */
+	public void setMasterVolume(float newMasterVolume)
+	{
+		checkVolume(newMasterVolume);
+		masterVolume = newMasterVolume;
+	}
+
+	/**
+	 * Get the number of voices currently playing
+	 * @return How many of the VOICE_COUNT voices are busy
+	 */
+	public int getActiveVoiceCount()
+	{
+		int count = 0;
+		for(Voice voice : voices)
+		{
+			if(voice.active)
+				count++;
+		}
+		return count;
+	}
+
+	/**
+	 * Reject a volume the mixer can't scale by
+	 */
+	private static void checkVolume(float volume)
+	{
+		if(!(volume >= 0) || Float.isInfinite(volume))
+			throw new IllegalArgumentException("Volume must be zero or more: " + volume);
+	}
+	
+	/**
+	 * Reject a pitch that would stop a voice or play it backwards off the
+	 * start of its sample
+	 */
+	private static void checkPitch(float pitch)
+	{
+		if(!(pitch > 0) || Float.isInfinite(pitch))
+			throw new IllegalArgumentException("Pitch must be positive: " + pitch);
+	}
+	
+	/**
+	 * Look up the voice for a handle
+	 * @return The voice or null if the handle is stale or its voice finished
+	 */
+	private Voice getVoice(int handle)
+	{
+		if(handle < 0)
+			return null;
+		Voice voice = voices[handle & INDEX_MASK];
+		if(!voice.active || voice.generation != handle >>> INDEX_BITS)
+			return null;
+		return voice;
+	}
+
+	/**
+	 * Mixing thread body. Runs until stop replaces it and then closes the line
+	 * it was started with. If the thread dies it marks the mixer stopped so
+	 * the next play starts it again instead of queueing voices nobody mixes.
+	 * @param line The output line opened for this thread
+	 */
+	private void mixLoop(SourceDataLine line)
+	{
+		Thread self = Thread.currentThread();
+		// Each thread mixes into its own buffers since the one being stopped
+		// may still be finishing a chunk when the next one starts
+		int[] accumulator = new int[CHUNK_FRAMES * 2];
+		byte[] output = new byte[CHUNK_BYTES];
+		try
+		{
+			while(mixingThread == self)
+			{
+				mixChunk(accumulator, output);
+				line.write(output, 0, output.length); // Blocks until the line has room
+			}
+			line.drain();
+		}
+		finally
+		{
+			synchronized(this)
+			{
+				if(mixingThread == self)
+				{
+					running = false;
+					mixingThread = null;
+				}
+			}
+			line.close();
+		}
+	}
+
+	/**
+	 * Mix one chunk of every active voice into the output buffer
+	 * @param accumulator Scratch space for the unclipped mix
+	 * @param output Buffer to write the 16 bit chunk to
+	 */
+	private void mixChunk(int[] accumulator, byte[] output)
+	{
+		float master = masterVolume;
+		int sample;
+
+		for(int i = 0; i < accumulator.length; i++)
+			accumulator[i] = 0;
+
+		// A voice that fails is dropped rather than taking the mixer down with it
+		for(Voice voice : voices)
+		{
+			if(!voice.active)
+				continue;
+			try
+			{
+				mixVoice(voice, master, accumulator);
+			}
+			catch(RuntimeException e)
+			{
+				voice.active = false;
+				e.printStackTrace();
+			}
+		}
+
+		for(Source source : sources)
+		{
+			try
+			{
+				if(!source.mixInto(accumulator, CHUNK_FRAMES, master))
+					sources.remove(source);
+			}
+			catch(RuntimeException e)
+			{
+				sources.remove(source);
+				e.printStackTrace();
+			}
+		}
+
+		// Clip to 16 bits, little endian
+		for(int i = 0; i < accumulator.length; i++)
+		{
+			sample = accumulator[i];
+			if(sample > Short.MAX_VALUE)
+				sample = Short.MAX_VALUE;
+			else if(sample < Short.MIN_VALUE)
+				sample = Short.MIN_VALUE;
+			output[i * 2] = (byte)sample;
+			output[i * 2 + 1] = (byte)(sample >> 8);
+		}
+	}
+
+	/**
+	 * Add one chunk of a voice to the accumulator, resampling with linear
+	 * interpolation to apply pitch and the sample's own rate. Panning
+	 * attenuates the far channel and leaves the near one untouched.
+	 */
+	private void mixVoice(Voice voice, float master, int[] accumulator)
+	{
+		int generation;
+		PhineasPcmSample sample;
+		boolean looping;
+		double position;
+
+		// Read the voice as play left it, not part way through being reused
+		synchronized(voices)
+		{
+			if(!voice.active)
+				return;
+			generation = voice.generation;
+			sample = voice.sample;
+			looping = voice.looping;
+			position = voice.position;
+		}
+
+		short[] samples = sample.getSamples();
+		int frames = sample.getFrameCount();
+		double step = voice.pitch * sample.getSampleRate() / SAMPLE_RATE;
+		float gain = voice.volume * master;
+		float pan = voice.pan;
+		float leftGain = gain * Math.min(1, 1 - pan);
+		float rightGain = gain * Math.min(1, 1 + pan);
+		int index;
+		int next;
+		float fraction;
+		float left;
+		float right;
+
+		for(int frame = 0; frame < CHUNK_FRAMES; frame++)
+		{
+			if(position >= frames)
+			{
+				if(!looping || frames == 0)
+				{
+					synchronized(voices)
+					{
+						if(voice.generation == generation)
+							voice.active = false;
+					}
+					return;
+				}
+				position %= frames;
+			}
+
+			index = (int)position;
+			next = index + 1 < frames ? index + 1 : (looping ? 0 : index);
+			fraction = (float)(position - index);
+
+			left = samples[index * 2] + (samples[next * 2] - samples[index * 2]) * fraction;
+			right = samples[index * 2 + 1] + (samples[next * 2 + 1] - samples[index * 2 + 1]) * fraction;
+			accumulator[frame * 2] += (int)(left * leftGain);
+			accumulator[frame * 2 + 1] += (int)(right * rightGain);
+
+			position += step;
+		}
+
+		// Don't clobber a voice that was stopped and handed out again meanwhile
+		synchronized(voices)
+		{
+			if(voice.generation == generation)
+				voice.position = position;
+		}
+	}
+}
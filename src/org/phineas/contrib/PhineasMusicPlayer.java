@@ -0,0 +1,141 @@
+package org.phineas.contrib;
+
+import java.io.IOException;
+
+import javax.sound.sampled.LineUnavailableException;
+import javax.sound.sampled.UnsupportedAudioFileException;
+
+/**
+ * Singleton that streams one music track at a time through the shared mixer,
+ * decoding as it plays instead of loading the whole track into a Clip
+ * @author Sam Pottinger
+ */
+public class PhineasMusicPlayer
+{
+	private static final PhineasMusicPlayer instance = new PhineasMusicPlayer();
+
+	private PhineasMusicStream current;
+	private float volume;
+
+	/**
+	 * Get access to a shared instance of this player
+	 * @return Shared instance of this singleton
+	 */
+	public static PhineasMusicPlayer getInstance()
+	{
+		return instance;
+	}
+
+	/**
+	 * Private constructor for this singleton
+	 */
+	private PhineasMusicPlayer()
+	{
+		volume = 1;
+	}
+
+	/**
+	 * Immediately replaces whatever is playing with a new track
+	 * @param loc The location of the track to play
+	 * @param loop If true, the track starts over when it ends
+	 * @throws UnsupportedAudioFileException Thrown if the track is not in a known format
+	 * @throws IOException Thrown if the track could not be opened
+	 * @throws LineUnavailableException Thrown if the mixer's output line could not be opened
+	 */
+	public void play(String loc, boolean loop)
+		throws UnsupportedAudioFileException, IOException, LineUnavailableException
+	{
+		crossFadeTo(loc, 0, loop);
+	}
+
+	/**
+	 * Fades the current track out while fading a new track in
+	 * @param loc The location of the track to play
+	 * @param fadeMillis How long the cross fade takes
+	 * @param loop If true, the new track starts over when it ends
+	 * @throws UnsupportedAudioFileException Thrown if the track is not in a known format
+	 * @throws IOException Thrown if the track could not be opened
+	 * @throws LineUnavailableException Thrown if the mixer's output line could not be opened
+	 */
+	public synchronized void crossFadeTo(String loc, long fadeMillis, boolean loop)
+		throws UnsupportedAudioFileException, IOException, LineUnavailableException
+	{
+		// Open the output line first so a missing line leaves the old track playing
+		PhineasMixer mixer = PhineasMixer.getInstance();
+		mixer.start();
+
+		PhineasMusicStream next = new PhineasMusicStream(loc, loop, fadeMillis > 0 ? 0 : volume);
+		next.start();
+		if(fadeMillis > 0)
+			next.fadeTo(volume, fadeMillis);
+
+		try
+		{
+			mixer.addSource(next);
+		}
+		catch(LineUnavailableException e)
+		{
+			next.close();
+			throw e;
+		}
+		catch(RuntimeException e)
+		{
+			next.close();
+			throw e;
+		}
+
+		// Only let go of the old track once the new one is mixing
+		stopCurrent(fadeMillis);
+		current = next;
+	}
+
+	/**
+	 * Stops the current track
+	 * @param fadeMillis How long to fade out over (0 stops immediately)
+	 */
+	public synchronized void stop(long fadeMillis)
+	{
+		stopCurrent(fadeMillis);
+		current = null;
+	}
+
+	/**
+	 * Changes the volume of the current and future tracks
+	 * @param newVolume The new volume (0 is silent, 1 is full volume)
+	 */
+	public synchronized void setVolume(float newVolume)
+	{
+		volume = newVolume;
+		if(current != null)
+			current.fadeTo(volume, 0);
+	}
+
+	/**
+	 * Get the volume tracks are played at
+	 * @return Volume (0 is silent, 1 is full volume)
+	 */
+	public synchronized float getVolume()
+	{
+		return volume;
+	}
+
+	/**
+	 * Determine if a track is playing
+	 * @return true if a track was started and has not ended or been stopped
+	 */
+	public synchronized boolean isPlaying()
+	{
+		return current != null && !current.isClosed();
+	}
+
+	private void stopCurrent(long fadeMillis)
+	{
+		if(current == null)
+			return;
+
+		if(fadeMillis > 0)
+			current.fadeOut(fadeMillis);
+		else
+			current.close();
+	}
+}
@@ -0,0 +1,321 @@
+package org.phineas.contrib;
+
+import java.io.IOException;
+import java.util.concurrent.locks.LockSupport;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.UnsupportedAudioFileException;
+
+/**
+ * Mixer source that decodes a long sound a little at a time on a background
+ * thread into a fixed size ring buffer, so memory use does not grow with the
+ * length of the track
+ * @author Sam Pottinger
+ */
+class PhineasMusicStream implements PhineasMixer.Source
+{
+	private static final int RING_FRAMES = 32 * 1024;
+	private static final int READ_FRAMES = 4 * 1024;
+	private static final long IDLE_NANOS = 5L * 1000 * 1000;
+
+	private final String loc;
+	private final boolean looping;
+	private final short[] ring;
+	private AudioInputStream input;
+	private int channels;
+	private double step;
+	private volatile long written;
+	private volatile long read;
+	private volatile boolean endOfStream;
+	private volatile boolean closed;
+	private volatile boolean stopWhenSilent;
+	private volatile Ramp ramp;
+
+	// Only touched by the mixing thread
+	private Ramp appliedRamp;
+	private float gainStep;
+	private float gain;
+
+	/**
+	 * Volume change requested by fadeTo, published to the mixing thread as a
+	 * whole so it never sees a target from one fade with the length of another
+	 */
+	private static class Ramp
+	{
+		private final float target;
+		private final float frames;
+
+		public Ramp(float newTarget, float newFrames)
+		{
+			target = newTarget;
+			frames = newFrames;
+		}
+	}
+
+	/**
+	 * Creates a new stream that has not started decoding yet
+	 * @param newLoc The location of the sound to stream
+	 * @param newLooping If true, the sound starts over when it ends
+	 * @param startGain The volume to start at (0 is silent, 1 is full volume)
+	 */
+	public PhineasMusicStream(String newLoc, boolean newLooping, float startGain)
+	{
+		loc = newLoc;
+		looping = newLooping;
+		ring = new short[RING_FRAMES * 2];
+		gain = startGain;
+		ramp = new Ramp(startGain, 1);
+		appliedRamp = ramp;
+	}
+
+	/**
+	 * Opens the sound and starts the decoding thread
+	 * @throws UnsupportedAudioFileException Thrown if the sound is not in a known format
+	 * @throws IOException Thrown if the sound could not be opened
+	 */
+	public void start() throws UnsupportedAudioFileException, IOException
+	{
+		input = open();
+
+		Thread decoder = new Thread("phineas-music-" + loc)
+		{
+			public void run() {decodeLoop();}
+		};
+		decoder.setDaemon(true);
+		decoder.start();
+	}
+
+	/**
+	 * Smoothly change this stream's volume
+	 * @param newGain The volume to end up at (0 is silent, 1 is full volume)
+	 * @param millis How long the change takes
+	 */
+	public void fadeTo(float newGain, long millis)
+	{
+		ramp = new Ramp(newGain, Math.max(1, millis * PhineasMixer.SAMPLE_RATE / 1000));
+	}
+
+	/**
+	 * Fade this stream out and end it once silent
+	 * @param millis How long the fade takes
+	 */
+	public void fadeOut(long millis)
+	{
+		stopWhenSilent = true;
+		fadeTo(0, millis);
+	}
+
+	/**
+	 * Stop decoding right away. The mixer drops the stream the next time it
+	 * pulls from it.
+	 */
+	@Override
+	public void close()
+	{
+		closed = true;
+	}
+
+	/**
+	 * Determine if this stream has finished playing
+	 * @return true if the stream ended or was faded out
+	 */
+	public boolean isClosed()
+	{
+		return closed;
+	}
+
+	@Override
+	public boolean mixInto(int[] accumulator, int frames, float master)
+	{
+		if(closed)
+			return false;
+
+		long readPosition = read;
+		int count = (int)Math.min(written - readPosition, frames);
+		int index;
+		float targetGain;
+
+		// Work out the step for a new fade from the gain it actually starts at
+		Ramp latest = ramp;
+		if(latest != appliedRamp)
+		{
+			appliedRamp = latest;
+			gainStep = (latest.target - gain) / latest.frames;
+		}
+		targetGain = latest.target;
+
+		for(int frame = 0; frame < count; frame++)
+		{
+			// Ramp towards the target volume
+			if(gain != targetGain)
+			{
+				gain += gainStep;
+				if((gainStep > 0 && gain > targetGain) || (gainStep <= 0 && gain < targetGain))
+					gain = targetGain;
+			}
+
+			index = (int)((readPosition + frame) % RING_FRAMES) * 2;
+			accumulator[frame * 2] += (int)(ring[index] * gain * master);
+			accumulator[frame * 2 + 1] += (int)(ring[index + 1] * gain * master);
+		}
+		read = readPosition + count;
+
+		if((stopWhenSilent && gain == 0) || (endOfStream && read == written))
+		{
+			closed = true;
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Open the sound as 16 bit little endian PCM at its own rate
+	 */
+	private AudioInputStream open() throws UnsupportedAudioFileException, IOException
+	{
+		AudioInputStream stream = PhineasSoundLoader.getInstance().openStream(loc);
+		AudioFormat source = stream.getFormat();
+		AudioFormat target = new AudioFormat(source.getSampleRate(), 16, source.getChannels(), true, false);
+
+		channels = source.getChannels();
+		if(channels != 1 && channels != 2)
+			throw new IOException("Only mono and stereo sounds can be streamed");
+		step = source.getSampleRate() / PhineasMixer.SAMPLE_RATE;
+
+		try
+		{
+			return source.matches(target) ? stream : AudioSystem.getAudioInputStream(target, stream);
+		}
+		catch(IllegalArgumentException e)
+		{
+			throw new IOException("Cannot convert " + source + " to PCM: " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Decoding thread body. Reads chunks, converts them to stereo at the mixer's
+	 * rate and writes them into the ring, waiting whenever the ring is full.
+	 */
+	private void decodeLoop()
+	{
+		byte[] bytes = new byte[READ_FRAMES * 2 * channels];
+		short[] frames = new short[(READ_FRAMES + 1) * 2]; // Frame 0 is the last frame of the previous chunk
+		short[] converted = new short[(int)(READ_FRAMES / step + 2) * 2];
+		double position = 1;
+		int count;
+		int outCount;
+		int offset;
+		int index;
+		float fraction;
+		boolean readSinceOpen = false;
+
+		try
+		{
+			while(!closed)
+			{
+				count = readFully(bytes) / (2 * channels);
+				if(count == 0)
+				{
+					input.close();
+					if(!looping || !readSinceOpen)
+						break;
+					input = open();
+					readSinceOpen = false;
+					continue;
+				}
+				readSinceOpen = true;
+
+				// Unpack to stereo shorts after the carried over frame
+				for(int frame = 0; frame < count; frame++)
+				{
+					offset = frame * 2 * channels;
+					frames[(frame + 1) * 2] = (short)((bytes[offset] & 0xFF) | (bytes[offset + 1] << 8));
+					frames[(frame + 1) * 2 + 1] = channels == 2
+							? (short)((bytes[offset + 2] & 0xFF) | (bytes[offset + 3] << 8))
+							: frames[(frame + 1) * 2];
+				}
+
+				// Resample to the mixer's rate
+				outCount = 0;
+				while(position < count)
+				{
+					index = (int)position;
+					fraction = (float)(position - index);
+					converted[outCount * 2] = (short)(frames[index * 2]
+							+ (frames[index * 2 + 2] - frames[index * 2]) * fraction);
+					converted[outCount * 2 + 1] = (short)(frames[index * 2 + 1]
+							+ (frames[index * 2 + 3] - frames[index * 2 + 1]) * fraction);
+					outCount++;
+					position += step;
+				}
+				position -= count;
+				frames[0] = frames[count * 2];
+				frames[1] = frames[count * 2 + 1];
+
+				writeFrames(converted, outCount);
+			}
+			input.close();
+		}
+		catch(IOException e)
+		{
+			e.printStackTrace();
+		}
+		catch(UnsupportedAudioFileException e)
+		{
+			e.printStackTrace();
+		}
+
+		endOfStream = true;
+	}
+
+	/**
+	 * Read until the buffer is full or the stream ends
+	 */
+	private int readFully(byte[] target) throws IOException
+	{
+		int total = 0;
+		int chunk;
+		while(total < target.length)
+		{
+			chunk = input.read(target, total, target.length - total);
+			if(chunk == -1)
+				break;
+			total += chunk;
+		}
+		return total;
+	}
+
+	/**
+	 * Copy frames into the ring, waiting for the mixer to make room
+	 */
+	private void writeFrames(short[] source, int count)
+	{
+		int copied = 0;
+		long writePosition;
+		int space;
+		int index;
+
+		while(copied < count && !closed)
+		{
+			writePosition = written;
+			space = (int)(RING_FRAMES - (writePosition - read));
+			if(space == 0)
+			{
+				LockSupport.parkNanos(IDLE_NANOS);
+				continue;
+			}
+
+			space = Math.min(space, count - copied);
+			for(int frame = 0; frame < space; frame++)
+			{
+				index = (int)((writePosition + frame) % RING_FRAMES) * 2;
+				ring[index] = source[(copied + frame) * 2];
+				ring[index + 1] = source[(copied + frame) * 2 + 1];
+			}
+			copied += space;
+			written = writePosition + space; // Publishes the frames to the mixing thread
+		}
+	}
+}
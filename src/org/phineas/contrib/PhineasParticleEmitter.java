@@ -0,0 +1,307 @@
+package org.phineas.contrib;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import org.phineas.core.PhineasDrawable;
+import org.phineas.core.PhineasStepListener;
+
+/**
+ * Particle system that keeps every particle in flat primitive arrays instead of
+ * as individual entities. All particles are updated in one loop (split across
+ * cores when there are many) and drawn into a single image, so the whole
+ * system is one drawable and one step listener no matter how many particles
+ * it has. Like other entities, it is not thread safe, so emit particles from
+ * step listeners.
+ * @author Sam Pottinger
+ */
+public class PhineasParticleEmitter implements PhineasDrawable, PhineasStepListener
+{
+	private static final int PARALLEL_THRESHOLD = 8192;
+	private static final float MILLISECONDS_PER_SECOND = 1000;
+
+	private final int originX;
+	private final int originY;
+	private final int width;
+	private final int height;
+	private final int capacity;
+	private final int particleSize;
+	private final int depth;
+
+	// One entry per particle, the first count of which are alive
+	private final float[] x;
+	private final float[] y;
+	private final float[] velocityX;
+	private final float[] velocityY;
+	private final float[] life;
+	private final float[] maxLife;
+	private final int[] color;
+	private int count;
+
+	private final BufferedImage image;
+	private final int[] pixels;
+	private final int[] dirty;
+	private int dirtyCount;
+
+	private final Random random;
+	private float gravityX;
+	private float gravityY;
+	private boolean parallel;
+
+	/**
+	 * Update for a range of particles
+	 */
+	private class UpdateTask extends RecursiveAction
+	{
+		private static final long serialVersionUID = 1L;
+
+		private final int start;
+		private final int end;
+		private final float seconds;
+		private final float milliseconds;
+
+		public UpdateTask(int newStart, int newEnd, float newMilliseconds)
+		{
+			start = newStart;
+			end = newEnd;
+			milliseconds = newMilliseconds;
+			seconds = newMilliseconds / MILLISECONDS_PER_SECOND;
+		}
+
+		@Override
+		protected void compute()
+		{
+			if(end - start <= PARALLEL_THRESHOLD)
+			{
+				update(start, end, seconds, milliseconds);
+				return;
+			}
+
+			int middle = (start + end) >>> 1;
+			invokeAll(new UpdateTask(start, middle, milliseconds), new UpdateTask(middle, end, milliseconds));
+		}
+	}
+
+	/**
+	 * Creates a new emitter that draws particles within the given area
+	 * @param newX The x position of the left edge of the area particles are drawn in
+	 * @param newY The y position of the top edge of the area particles are drawn in
+	 * @param newWidth The width of the area particles are drawn in
+	 * @param newHeight The height of the area particles are drawn in
+	 * @param newCapacity The maximum number of live particles
+	 * @param newParticleSize The width and height of each particle in pixels
+	 * @param newDepth The depth to draw the particles at
+	 */
+	public PhineasParticleEmitter(int newX, int newY, int newWidth, int newHeight, int newCapacity,
+			int newParticleSize, int newDepth)
+	{
+		originX = newX;
+		originY = newY;
+		width = newWidth;
+		height = newHeight;
+		capacity = newCapacity;
+		particleSize = newParticleSize;
+		depth = newDepth;
+
+		x = new float[capacity];
+		y = new float[capacity];
+		velocityX = new float[capacity];
+		velocityY = new float[capacity];
+		life = new float[capacity];
+		maxLife = new float[capacity];
+		color = new int[capacity];
+
+		image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+		pixels = ((DataBufferInt)image.getRaster().getDataBuffer()).getData();
+		dirty = new int[capacity * particleSize * particleSize];
+
+		random = new Random();
+	}
+
+	/**
+	 * Add a single particle. Does nothing if the emitter is full.
+	 * @param newX The particle's starting x position
+	 * @param newY The particle's starting y position
+	 * @param newVelocityX Horizontal speed in pixels per second
+	 * @param newVelocityY Vertical speed in pixels per second
+	 * @param lifeMillis How long the particle lives for, fading out as it goes
+	 * @param argb The particle's color
+	 * @return true if the particle was added
+	 */
+	public boolean emit(float newX, float newY, float newVelocityX, float newVelocityY, float lifeMillis, int argb)
+	{
+		if(count == capacity)
+			return false;
+
+		x[count] = newX;
+		y[count] = newY;
+		velocityX[count] = newVelocityX;
+		velocityY[count] = newVelocityY;
+		life[count] = lifeMillis;
+		maxLife[count] = lifeMillis;
+		color[count] = argb;
+		count++;
+		return true;
+	}
+
+	/**
+	 * Add particles flying out from a point in random directions
+	 * @param amount The number of particles to add
+	 * @param centerX The x position to start every particle at
+	 * @param centerY The y position to start every particle at
+	 * @param maxSpeed The fastest a particle can move in pixels per second
+	 * @param lifeMillis How long the particles live for
+	 * @param argb The color of the particles
+	 */
+	public void burst(int amount, float centerX, float centerY, float maxSpeed, float lifeMillis, int argb)
+	{
+		double angle;
+		float speed;
+		for(int i = 0; i < amount; i++)
+		{
+			angle = random.nextDouble() * Math.PI * 2;
+			speed = random.nextFloat() * maxSpeed;
+			if(!emit(centerX, centerY, (float)Math.cos(angle) * speed, (float)Math.sin(angle) * speed,
+					lifeMillis, argb))
+				return;
+		}
+	}
+
+	/**
+	 * Set a constant acceleration applied to every particle, like gravity
+	 * @param newGravityX Horizontal acceleration in pixels per second per second
+	 * @param newGravityY Vertical acceleration in pixels per second per second
+	 */
+	public void setGravity(float newGravityX, float newGravityY)
+	{
+		gravityX = newGravityX;
+		gravityY = newGravityY;
+	}
+
+	/**
+	 * Have large numbers of particles updated on several cores
+	 * @param newParallel If true, updates are split across the common fork join pool
+	 */
+	public void setParallel(boolean newParallel)
+	{
+		parallel = newParallel;
+	}
+
+	/**
+	 * Remove every particle
+	 */
+	public void clear()
+	{
+		count = 0;
+	}
+
+	/**
+	 * Get the number of live particles
+	 * @return How many particles are currently alive
+	 */
+	public int getParticleCount()
+	{
+		return count;
+	}
+
+	@Override
+	public void onStep(long milliseconds)
+	{
+		if(parallel && count > PARALLEL_THRESHOLD)
+			ForkJoinPool.commonPool().invoke(new UpdateTask(0, count, milliseconds));
+		else
+			update(0, count, milliseconds / MILLISECONDS_PER_SECOND, milliseconds);
+
+		// Swap dead particles out of the live range
+		int i = 0;
+		while(i < count)
+		{
+			if(life[i] > 0)
+			{
+				i++;
+				continue;
+			}
+
+			count--;
+			x[i] = x[count];
+			y[i] = y[count];
+			velocityX[i] = velocityX[count];
+			velocityY[i] = velocityY[count];
+			life[i] = life[count];
+			maxLife[i] = maxLife[count];
+			color[i] = color[count];
+		}
+	}
+
+	/**
+	 * Move and age a range of particles
+	 */
+	private void update(int start, int end, float seconds, float milliseconds)
+	{
+		float accelerationX = gravityX * seconds;
+		float accelerationY = gravityY * seconds;
+		for(int i = start; i < end; i++)
+		{
+			velocityX[i] += accelerationX;
+			velocityY[i] += accelerationY;
+			x[i] += velocityX[i] * seconds;
+			y[i] += velocityY[i] * seconds;
+			life[i] -= milliseconds;
+		}
+	}
+
+	@Override
+	public void draw(Graphics2D target)
+	{
+		int left;
+		int top;
+		int right;
+		int bottom;
+		int alpha;
+		int argb;
+		int row;
+
+		// Only erase what was drawn last time
+		for(int i = 0; i < dirtyCount; i++)
+			pixels[dirty[i]] = 0;
+		dirtyCount = 0;
+
+		for(int i = 0; i < count; i++)
+		{
+			left = (int)x[i] - originX;
+			top = (int)y[i] - originY;
+			right = Math.min(left + particleSize, width);
+			bottom = Math.min(top + particleSize, height);
+			left = Math.max(left, 0);
+			top = Math.max(top, 0);
+			if(left >= right || top >= bottom)
+				continue;
+
+			// Fade out over the particle's life
+			alpha = (int)((color[i] >>> 24) * (life[i] / maxLife[i]));
+			argb = (alpha << 24) | (color[i] & 0xFFFFFF);
+
+			for(int py = top; py < bottom; py++)
+			{
+				row = py * width;
+				for(int px = left; px < right; px++)
+				{
+					pixels[row + px] = argb;
+					dirty[dirtyCount++] = row + px;
+				}
+			}
+		}
+
+		target.drawImage(image, originX, originY, null);
+	}
+
+	@Override
+	public int getDepth()
+	{
+		return depth;
+	}
+}
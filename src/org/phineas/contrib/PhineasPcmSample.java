@@ -0,0 +1,125 @@
+package org.phineas.contrib;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+
+/**
+ * Fully decoded sound held as interleaved 16 bit stereo samples, shared by every
+ * mixer voice playing it
+ * @author Sam Pottinger
+ */
+public class PhineasPcmSample
+{
+	private static final int BUFFER_SIZE = 16 * 1024;
+
+	private final short[] samples;
+	private final int frames;
+	private final float sampleRate;
+
+	/**
+	 * Creates a sample out of already decoded audio
+	 * @param newSamples Interleaved left / right 16 bit samples
+	 * @param newSampleRate The number of frames per second the audio was recorded at
+	 */
+	public PhineasPcmSample(short[] newSamples, float newSampleRate)
+	{
+		samples = newSamples;
+		frames = samples.length / 2;
+		sampleRate = newSampleRate;
+	}
+
+	/**
+	 * Decodes everything in the given stream into a new sample
+	 * @param input The stream to decode (closed once read)
+	 * @return Newly decoded sample
+	 * @throws IOException Thrown if the stream could not be read or converted to PCM
+	 */
+	public static PhineasPcmSample decode(AudioInputStream input) throws IOException
+	{
+		AudioFormat source = input.getFormat();
+		int channels = source.getChannels();
+		AudioFormat target = new AudioFormat(source.getSampleRate(), 16, channels, true, false);
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		byte[] chunk = new byte[BUFFER_SIZE];
+		byte[] pcm;
+		short[] newSamples;
+		int read;
+		int frameCount;
+
+		if(channels != 1 && channels != 2)
+			throw new IOException("Only mono and stereo sounds can be mixed");
+
+		// Have javax.sound convert the encoding, handle channels ourselves
+		try
+		{
+			if(!source.matches(target))
+				input = AudioSystem.getAudioInputStream(target, input);
+			while((read = input.read(chunk)) != -1)
+				bytes.write(chunk, 0, read);
+		}
+		catch(IllegalArgumentException e)
+		{
+			throw new IOException("Cannot convert " + source + " to PCM: " + e.getMessage());
+		}
+		finally
+		{
+			input.close();
+		}
+
+		pcm = bytes.toByteArray();
+		frameCount = pcm.length / (2 * channels);
+		newSamples = new short[frameCount * 2];
+		for(int frame = 0; frame < frameCount; frame++)
+		{
+			int offset = frame * 2 * channels;
+			short left = (short)((pcm[offset] & 0xFF) | (pcm[offset + 1] << 8));
+			short right = left;
+			if(channels == 2)
+				right = (short)((pcm[offset + 2] & 0xFF) | (pcm[offset + 3] << 8));
+			newSamples[frame * 2] = left;
+			newSamples[frame * 2 + 1] = right;
+		}
+
+		return new PhineasPcmSample(newSamples, source.getSampleRate());
+	}
+
+	/**
+	 * Get the raw samples of this sound
+	 * @return Interleaved left / right 16 bit samples (do not modify)
+	 */
+	public short[] getSamples()
+	{
+		return samples;
+	}
+
+	/**
+	 * Get the length of this sound
+	 * @return Number of stereo frames in this sound
+	 */
+	public int getFrameCount()
+	{
+		return frames;
+	}
+
+	/**
+	 * Get the rate this sound was recorded at
+	 * @return Number of frames per second
+	 */
+	public float getSampleRate()
+	{
+		return sampleRate;
+	}
+
+	/**
+	 * Get the memory used by this sample
+	 * @return Size of the sample data in bytes
+	 */
+	public long getSizeInBytes()
+	{
+		return samples.length * 2L;
+	}
+}
@@ -0,0 +1,27 @@
+package org.phineas.contrib;
+
+/**
+ * Interface for objects that want to follow the progress of an asset preload
+ * (like a loading screen)
+ * @note Called from loader threads, not from the game loop
+ * @author Sam Pottinger
+ */
+public interface PhineasPreloadListener
+{
+	/**
+	 * Called after an asset was decoded and placed in its loader's cache
+	 * @param loc The location of the asset that finished loading
+	 * @param completed How many assets in the preload have finished (including failures)
+	 * @param total How many assets are in the preload
+	 */
+	public void onAssetLoaded(String loc, int completed, int total);
+
+	/**
+	 * Called when an asset could not be loaded
+	 * @param loc The location of the asset that failed to load
+	 * @param error What went wrong
+	 * @param completed How many assets in the preload have finished (including failures)
+	 * @param total How many assets are in the preload
+	 */
+	public void onAssetFailed(String loc, Exception error, int completed, int total);
+}
@@ -7,12 +7,15 @@ import java.awt.Graphics2D;
 import org.phineas.core.PhineasBoundable;
 import org.phineas.core.PhineasDrawable;
 import org.phineas.core.PhineasPlaceable;
+import org.phineas.core.PhineasPoolable;
+import org.phineas.core.PhineasRenderState;
+import org.phineas.core.PhineasStatefulDrawable;
 
 /**
  * Simple generic rectangle
  * @author Sam Pottinger
  */
-public class PhineasRectangle implements PhineasBoundable, PhineasPlaceable, PhineasDrawable
+public class PhineasRectangle implements PhineasBoundable, PhineasPlaceable, PhineasStatefulDrawable, PhineasPoolable
 {
 	int x;
 	int y;
@@ -22,6 +25,8 @@ public class PhineasRectangle implements PhineasBoundable, PhineasPlaceable, Phi
 	AlphaComposite alpha;
 	AlphaComposite opaqueAlpha;
 	Color color;
+	PhineasRenderState renderState;
+	volatile boolean active = true;
 
 	/**
 	 * Create a new opaque rectangle
@@ -41,6 +46,7 @@ public class PhineasRectangle implements PhineasBoundable, PhineasPlaceable, Phi
 		opaqueAlpha = AlphaComposite.getInstance(AlphaComposite.SRC_OVER, 1);
 		alpha = opaqueAlpha;
 		depth = PhineasDrawable.DEFAULT_DEPTH;
+		updateRenderState();
 	}
 	
 	/**
@@ -63,6 +69,7 @@ public class PhineasRectangle implements PhineasBoundable, PhineasPlaceable, Phi
 		opaqueAlpha = AlphaComposite.getInstance(AlphaComposite.SRC_OVER, 1);
 		alpha = opaqueAlpha;
 		depth = newDepth;
+		updateRenderState();
 	}
 	
 	/**
@@ -72,6 +79,15 @@ public class PhineasRectangle implements PhineasBoundable, PhineasPlaceable, Phi
 	public void setColor(Color newColor)
 	{
 		color = newColor;
+		updateRenderState();
+	}
+	
+	/**
+	 * Rebuild the shared description of how this rectangle is drawn
+	 */
+	private void updateRenderState()
+	{
+		renderState = new PhineasRenderState(color, alpha, null, null);
 	}
 	
 	/**
@@ -127,6 +143,24 @@ public class PhineasRectangle implements PhineasBoundable, PhineasPlaceable, Phi
 		target.fillRect(x, y, width, height);
 		target.setComposite(opaqueAlpha);
 	}
+	
+	@Override
+	public PhineasRenderState getRenderState()
+	{
+		return renderState;
+	}
+	
+	@Override
+	public Object getBatchKey()
+	{
+		return renderState;
+	}
+	
+	@Override
+	public void drawStateless(Graphics2D target)
+	{
+		target.fillRect(x, y, width, height);
+	}
 
 	@Override
 	public int getDepth() 
@@ -134,4 +168,15 @@ public class PhineasRectangle implements PhineasBoundable, PhineasPlaceable, Phi
 		return depth;
 	}
 
+	@Override
+	public void setActive(boolean newActive)
+	{
+		active = newActive;
+	}
+	
+	@Override
+	public boolean isActive()
+	{
+		return active;
+	}
 }
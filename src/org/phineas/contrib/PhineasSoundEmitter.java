@@ -0,0 +1,143 @@
+package org.phineas.contrib;
+
+import java.io.IOException;
+
+import javax.sound.sampled.UnsupportedAudioFileException;
+
+import org.phineas.core.PhineasLocateable;
+
+/**
+ * Sound that plays from the position of a game object, getting quieter with
+ * distance from PhineasSpatialAudio's listener and panning left or right
+ * @author Sam Pottinger
+ */
+public class PhineasSoundEmitter
+{
+	public static final int DEFAULT_RADIUS = 500;
+
+	private final PhineasLocateable source;
+	private final PhineasPcmSample sample;
+	private final boolean looping;
+	private volatile float volume;
+	private volatile float pitch;
+	private volatile int radius;
+
+	// Only touched under PhineasSpatialAudio's lock
+	boolean requested;
+	int handle;
+	float distance;
+
+	/**
+	 * Creates a new emitter that plays a sound from the given object's position
+	 * @param newSource The object the sound comes from
+	 * @param loc The location of the sound to play
+	 * @param newLooping If true, the sound repeats until stopped
+	 * @throws UnsupportedAudioFileException Thrown if the sound is not in a known format
+	 * @throws IOException Thrown if the sound could not be read
+	 */
+	public PhineasSoundEmitter(PhineasLocateable newSource, String loc, boolean newLooping)
+		throws UnsupportedAudioFileException, IOException
+	{
+		this(newSource, PhineasSoundLoader.getInstance().loadSample(loc), newLooping);
+	}
+
+	/**
+	 * Creates a new emitter that plays an already decoded sound from the given
+	 * object's position
+	 * @param newSource The object the sound comes from
+	 * @param newSample The sound to play
+	 * @param newLooping If true, the sound repeats until stopped
+	 */
+	public PhineasSoundEmitter(PhineasLocateable newSource, PhineasPcmSample newSample, boolean newLooping)
+	{
+		source = newSource;
+		sample = newSample;
+		looping = newLooping;
+		volume = 1;
+		pitch = 1;
+		radius = DEFAULT_RADIUS;
+		handle = -1;
+	}
+
+	/**
+	 * Starts this sound on the next step. A one shot sound that is out of
+	 * earshot then is dropped, a looping sound waits until it is in earshot.
+	 */
+	public void play()
+	{
+		PhineasSpatialAudio.getInstance().requestPlay(this);
+	}
+
+	/**
+	 * Stops this sound
+	 */
+	public void stop()
+	{
+		PhineasSpatialAudio.getInstance().requestStop(this);
+	}
+
+	/**
+	 * Set the volume of this sound when heard from right on top of it
+	 * @param newVolume Volume between 0 (silent) and 1 (full volume)
+	 */
+	public void setVolume(float newVolume)
+	{
+		volume = newVolume;
+	}
+
+	/**
+	 * Set the playback speed of this sound, applied the next time it starts
+	 * @param newPitch Playback speed multiplier (2 is an octave up)
+	 */
+	public void setPitch(float newPitch)
+	{
+		pitch = newPitch;
+	}
+
+	/**
+	 * Set how far away this sound can be heard
+	 * @param newRadius Distance in pixels at which this sound fades to silence
+	 */
+	public void setRadius(int newRadius)
+	{
+		radius = newRadius;
+	}
+
+	/**
+	 * Get how far away this sound can be heard
+	 * @return Distance in pixels at which this sound fades to silence
+	 */
+	public int getRadius()
+	{
+		return radius;
+	}
+
+	/**
+	 * Get the object this sound comes from
+	 * @return The object this emitter follows
+	 */
+	public PhineasLocateable getSource()
+	{
+		return source;
+	}
+
+	PhineasPcmSample getSample()
+	{
+		return sample;
+	}
+
+	boolean isLooping()
+	{
+		return looping;
+	}
+
+	float getVolume()
+	{
+		return volume;
+	}
+
+	float getPitch()
+	{
+		return pitch;
+	}
+}
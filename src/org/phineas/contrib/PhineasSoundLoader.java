@@ -2,8 +2,13 @@ package org.phineas.contrib;
 
 import java.io.IOException;
 import java.net.URL;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Future;
 
 import javax.sound.sampled.AudioInputStream;
 import javax.sound.sampled.AudioSystem;
@@ -13,14 +18,20 @@ import javax.sound.sampled.UnsupportedAudioFileException;
 
 public class PhineasSoundLoader
 {
-    private static PhineasSoundLoader instance = null;
+    public static final long DEFAULT_CACHE_BUDGET = 64L * 1024 * 1024;
 
-    private Map<String, Clip> sounds;
+    private static final PhineasSoundLoader instance = new PhineasSoundLoader();
+
+    private PhineasAssetCache<Clip> sounds;
+
+    private Set<Clip> unpinnedClips;
+
+    private PhineasAssetCache<PhineasPcmSample> samples;
+
+    private List<PhineasAssetArchive> archives;
 
     public static PhineasSoundLoader getInstance()
     {
-        if (instance == null)
-            instance = new PhineasSoundLoader();
         return instance;
     }
 
@@ -29,7 +40,128 @@ public class PhineasSoundLoader
      */
     private PhineasSoundLoader()
     {
-        sounds = new HashMap<String, Clip>();
+        unpinnedClips = Collections.newSetFromMap(new ConcurrentHashMap<Clip, Boolean>());
+        sounds = new PhineasAssetCache<Clip>(DEFAULT_CACHE_BUDGET, new PhineasAssetCache.Weigher<Clip>()
+        {
+            @Override
+            public long weigh(Clip value)
+            {
+                return (long) value.getFrameLength() * value.getFormat().getFrameSize();
+            }
+        }, new PhineasAssetCache.EvictionListener<Clip>()
+        {
+            @Override
+            public void onEviction(String key, Clip value)
+            {
+                // Callers of loadSound hold no pin and may still be playing the
+                // clip, so just forget it and leave closing it to them
+                if (!unpinnedClips.remove(value))
+                    value.close();
+            }
+        });
+        samples = new PhineasAssetCache<PhineasPcmSample>(DEFAULT_CACHE_BUDGET,
+            new PhineasAssetCache.Weigher<PhineasPcmSample>()
+            {
+                @Override
+                public long weigh(PhineasPcmSample value)
+                {
+                    return value.getSizeInBytes();
+                }
+            }, null);
+        archives = new CopyOnWriteArrayList<PhineasAssetArchive>();
+    }
+
+    /**
+     * Get the cache this loader keeps decoded samples for the mixer in
+     * 
+     * @return This loader's sample cache
+     */
+    public PhineasAssetCache<PhineasPcmSample> getSampleCache()
+    {
+        return samples;
+    }
+
+    /**
+     * Decodes the sound at the given location for playback through PhineasMixer,
+     * sharing the decoded PCM between everything that plays it
+     * 
+     * @param loc
+     *        The location of the sound to load
+     * @return Decoded sample for the sound at that location
+     */
+    public PhineasPcmSample loadSample(String loc) throws UnsupportedAudioFileException, IOException
+    {
+        PhineasPcmSample cachedSample = samples.get(loc);
+        if (cachedSample != null)
+            return cachedSample;
+
+        PhineasAssetLoadEvent event = new PhineasAssetLoadEvent();
+        event.begin();
+        PhineasPcmSample sample = PhineasPcmSample.decode(openStream(loc));
+        if (event.shouldCommit())
+        {
+            event.location = loc;
+            event.kind = PhineasAssetLoadEvent.KIND_SAMPLE;
+            event.fromArchive = isInArchive(loc);
+            event.bytes = sample.getSizeInBytes();
+            event.commit();
+        }
+
+        return samples.putIfAbsent(loc, sample);
+    }
+
+    /**
+     * Have this loader read sounds from the given archive before falling back
+     * to individual resources
+     * 
+     * @param archive
+     *        The archive to read sounds from
+     */
+    public void mountArchive(PhineasAssetArchive archive)
+    {
+        archives.add(archive);
+    }
+
+    /**
+     * Stop reading sounds from the given archive
+     * 
+     * @param archive
+     *        The archive to no longer read sounds from
+     */
+    public void unmountArchive(PhineasAssetArchive archive)
+    {
+        archives.remove(archive);
+    }
+
+    /**
+     * Opens a stream over the sound at the given location, reading raw PCM
+     * from a mounted archive if possible
+     * 
+     * @param loc
+     *        The location of the sound
+     * @return Stream of the sound's audio
+     */
+    public AudioInputStream openStream(String loc) throws UnsupportedAudioFileException, IOException
+    {
+        for (PhineasAssetArchive archive : archives)
+        {
+            if (archive.hasSound(loc))
+                return archive.openSound(loc);
+        }
+
+        URL url = this.getClass().getClassLoader().getResource(loc);
+        return AudioSystem.getAudioInputStream(url);
+    }
+
+    /**
+     * Get the cache this loader keeps clips in (for adjusting its budget or
+     * reading its hit, miss and eviction counts)
+     * 
+     * @return This loader's clip cache
+     */
+    public PhineasAssetCache<Clip> getCache()
+    {
+        return sounds;
     }
 
     public Clip loadSound(String loc) throws LineUnavailableException,
@@ -38,23 +170,130 @@ public class PhineasSoundLoader
         return loadSound(loc, true);
     }
 
+    /**
+     * Loads the clip at the given location
+     * 
+     * @param loc
+     *        The location of the sound to load
+     * @param useCache
+     *        If true, the clip is shared through the cache and may be dropped
+     *        from it at any time (use acquireSound to keep it cached). If
+     *        false, a new clip owned by the caller is opened.
+     * @return Clip for the sound at that location
+     */
     public Clip loadSound(String loc, boolean useCache) throws LineUnavailableException,
         UnsupportedAudioFileException, IOException
     {
-        // Load from cache if possible
-        if (useCache && sounds.containsKey(loc))
-            return sounds.get(loc);
+        if (!useCache)
+            return decodeSound(loc);
 
-        // Load image
-        URL url = this.getClass().getClassLoader().getResource(loc);
-        AudioInputStream audioInputStream = AudioSystem.getAudioInputStream(url);
+        // Load from cache if possible (pinned just long enough to mark the clip
+        // as handed out, so eviction drops it without closing it)
+        Clip cachedClip = sounds.acquire(loc);
+        if (cachedClip == null)
+            cachedClip = publish(loc, decodeSound(loc), true);
+
+        unpinnedClips.add(cachedClip);
+        sounds.release(loc);
+        return cachedClip;
+    }
+
+    /**
+     * Loads the clip at the given location and pins it in the cache so that it
+     * is not evicted (and closed) until releaseSound is called
+     * 
+     * @param loc
+     *        The location of the sound to load
+     * @return Shared clip for the sound at that location
+     */
+    public Clip acquireSound(String loc) throws LineUnavailableException,
+        UnsupportedAudioFileException, IOException
+    {
+        Clip cachedClip = sounds.acquire(loc);
+        if (cachedClip != null)
+            return cachedClip;
+
+        return publish(loc, decodeSound(loc), true);
+    }
+
+    /**
+     * Unpins a clip pinned with acquireSound
+     * 
+     * @param loc
+     *        The location of the sound
+     */
+    public void releaseSound(String loc)
+    {
+        sounds.release(loc);
+    }
+
+    /**
+     * Decodes the sounds at the given locations in parallel on background threads,
+     * placing them in this loader's cache as each one finishes
+     * 
+     * @param locs
+     *        The locations of the sounds to load (like a level's manifest)
+     * @param listener
+     *        Listener to report progress to (may be null)
+     * @return One future for each sound, in the order given
+     */
+    public List<Future<Clip>> preloadSounds(Collection<String> locs, PhineasPreloadListener listener)
+    {
+        return PhineasAssetExecutor.getInstance().preload(locs, listener,
+            new PhineasAssetExecutor.AssetTask<Clip>()
+            {
+                @Override
+                public Clip load(String loc) throws Exception
+                {
+                    return loadSound(loc);
+                }
+            });
+    }
+
+    /**
+     * Opens a new clip for the sound at the given location
+     */
+    private Clip decodeSound(String loc) throws LineUnavailableException,
+        UnsupportedAudioFileException, IOException
+    {
+        PhineasAssetLoadEvent event = new PhineasAssetLoadEvent();
+        event.begin();
+        AudioInputStream audioInputStream = openStream(loc);
         Clip clip = AudioSystem.getClip();
         clip.open(audioInputStream);
+        if (event.shouldCommit())
+        {
+            event.location = loc;
+            event.kind = PhineasAssetLoadEvent.KIND_CLIP;
+            event.fromArchive = isInArchive(loc);
+            event.bytes = clip.getFrameLength() * (long)clip.getFormat().getFrameSize();
+            event.commit();
+        }
+        return clip;
+    }
 
-        // Cache
-        sounds.put(loc, clip);
+    /**
+     * Determine if a mounted archive holds the sound at the given location
+     */
+    private boolean isInArchive(String loc)
+    {
+        for (PhineasAssetArchive archive : archives)
+        {
+            if (archive.hasSound(loc))
+                return true;
+        }
+        return false;
+    }
 
-        return clip;
+    /**
+     * Caches a newly opened clip (if another thread beat us to it, use its copy)
+     */
+    private Clip publish(String loc, Clip clip, boolean pin)
+    {
+        Clip cachedClip = pin ? sounds.putIfAbsentAndAcquire(loc, clip) : sounds.putIfAbsent(loc, clip);
+        if (cachedClip != clip)
+            clip.close();
+        return cachedClip;
     }
 
 }
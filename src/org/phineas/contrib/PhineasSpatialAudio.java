@@ -0,0 +1,230 @@
+package org.phineas.contrib;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+import org.phineas.core.PhineasLocateable;
+import org.phineas.core.PhineasStepListener;
+
+/**
+ * Singleton that positions PhineasSoundEmitters relative to a listener each
+ * step. Emitters out of earshot never take a mixer voice and only the nearest
+ * few audible emitters play, so crowded scenes don't use up every voice. Add
+ * this to the game with PhineasGameFacade.addEntity to have it updated.
+ * @author Sam Pottinger
+ */
+public class PhineasSpatialAudio implements PhineasStepListener
+{
+	public static final int DEFAULT_MAX_VOICES = PhineasMixer.VOICE_COUNT / 2;
+
+	private static final PhineasSpatialAudio instance = new PhineasSpatialAudio();
+
+	private static final Comparator<PhineasSoundEmitter> NEAREST_FIRST = new Comparator<PhineasSoundEmitter>()
+	{
+		public int compare(PhineasSoundEmitter a, PhineasSoundEmitter b)
+		{
+			return Float.compare(a.distance, b.distance);
+		}
+	};
+
+	private final List<PhineasSoundEmitter> active;
+	private PhineasSoundEmitter[] candidates;
+	private PhineasLocateable listener;
+	private int listenerX;
+	private int listenerY;
+	private int maxVoices;
+
+	/**
+	 * Get access to a shared instance of this manager
+	 * @return Shared instance of this singleton
+	 */
+	public static PhineasSpatialAudio getInstance()
+	{
+		return instance;
+	}
+
+	/**
+	 * Private constructor for this singleton
+	 */
+	private PhineasSpatialAudio()
+	{
+		active = new ArrayList<PhineasSoundEmitter>();
+		candidates = new PhineasSoundEmitter[16];
+		maxVoices = DEFAULT_MAX_VOICES;
+	}
+
+	/**
+	 * Have sounds heard from the position of the given object, like the player
+	 * @param newListener The object to follow or null to use a fixed position
+	 */
+	public synchronized void setListener(PhineasLocateable newListener)
+	{
+		listener = newListener;
+	}
+
+	/**
+	 * Have sounds heard from a fixed position
+	 * @param x The horizontal position to listen from in pixels
+	 * @param y The vertical position to listen from in pixels
+	 */
+	public synchronized void setListenerPosition(int x, int y)
+	{
+		listener = null;
+		listenerX = x;
+		listenerY = y;
+	}
+
+	/**
+	 * Set how many emitters may play at once. Beyond that only the nearest play.
+	 * @param newMaxVoices Maximum number of mixer voices to use
+	 */
+	public synchronized void setMaxVoices(int newMaxVoices)
+	{
+		maxVoices = newMaxVoices;
+	}
+
+	/**
+	 * Get the number of emitters that have been played and not yet stopped,
+	 * whether or not they are currently audible
+	 * @return Number of emitters being tracked
+	 */
+	public synchronized int getEmitterCount()
+	{
+		return active.size();
+	}
+
+	synchronized void requestPlay(PhineasSoundEmitter emitter)
+	{
+		if(emitter.requested)
+		{
+			// Retrigger one shot sounds, leave loops running
+			if(emitter.isLooping())
+				return;
+			PhineasMixer.getInstance().stopVoice(emitter.handle);
+			emitter.handle = -1;
+			return;
+		}
+
+		emitter.requested = true;
+		emitter.handle = -1;
+		active.add(emitter);
+	}
+
+	synchronized void requestStop(PhineasSoundEmitter emitter)
+	{
+		if(!emitter.requested)
+			return;
+
+		PhineasMixer.getInstance().stopVoice(emitter.handle);
+		emitter.handle = -1;
+		emitter.requested = false;
+		active.remove(emitter);
+	}
+
+	@Override
+	public synchronized void onStep(long milliseconds)
+	{
+		PhineasMixer mixer = PhineasMixer.getInstance();
+		int centerX = listener == null ? listenerX : listener.getX();
+		int centerY = listener == null ? listenerY : listener.getY();
+		int audible = 0;
+		PhineasSoundEmitter emitter;
+		PhineasLocateable source;
+		long dx;
+		long dy;
+		long radius;
+		long distanceSquared;
+		float gain;
+		float pan;
+
+		if(candidates.length < active.size())
+			candidates = new PhineasSoundEmitter[active.size() * 2];
+
+		// Cull anything finished or out of earshot before it can take a voice
+		for(int i = 0; i < active.size(); i++)
+		{
+			emitter = active.get(i);
+			if(emitter.handle != -1 && !mixer.isPlaying(emitter.handle))
+			{
+				emitter.handle = -1;
+				if(!emitter.isLooping())
+				{
+					emitter.requested = false;
+					continue;
+				}
+			}
+
+			source = emitter.getSource();
+			dx = source.getX() - centerX;
+			dy = source.getY() - centerY;
+			radius = emitter.getRadius();
+			distanceSquared = dx * dx + dy * dy;
+			if(distanceSquared >= radius * radius)
+			{
+				silence(mixer, emitter);
+				continue;
+			}
+
+			emitter.distance = (float)(Math.sqrt(distanceSquared) / radius);
+			candidates[audible++] = emitter;
+		}
+
+		if(audible > maxVoices)
+			Arrays.sort(candidates, 0, audible, NEAREST_FIRST);
+
+		// Only the nearest emitters get voices
+		for(int i = 0; i < audible; i++)
+		{
+			emitter = candidates[i];
+			candidates[i] = null;
+			if(i >= maxVoices)
+			{
+				silence(mixer, emitter);
+				continue;
+			}
+
+			gain = emitter.getVolume() * (1 - emitter.distance);
+			pan = Math.max(-1, Math.min(1, (float)(emitter.getSource().getX() - centerX) / emitter.getRadius()));
+			if(emitter.handle == -1)
+			{
+				emitter.handle = mixer.play(emitter.getSample(), gain, emitter.getPitch(), pan,
+						emitter.isLooping());
+				if(emitter.handle == -1 && !emitter.isLooping())
+					emitter.requested = false;
+			}
+			else
+			{
+				mixer.setVolume(emitter.handle, gain);
+				mixer.setPan(emitter.handle, pan);
+			}
+		}
+
+		// Drop emitters that are done
+		int kept = 0;
+		for(int i = 0; i < active.size(); i++)
+		{
+			emitter = active.get(i);
+			if(emitter.requested)
+				active.set(kept++, emitter);
+		}
+		while(active.size() > kept)
+			active.remove(active.size() - 1);
+	}
+
+	/**
+	 * Release an emitter's voice. Loops keep waiting to come back into earshot,
+	 * one shot sounds are dropped.
+	 */
+	private void silence(PhineasMixer mixer, PhineasSoundEmitter emitter)
+	{
+		if(emitter.handle != -1)
+		{
+			mixer.stopVoice(emitter.handle);
+			emitter.handle = -1;
+		}
+		if(!emitter.isLooping())
+			emitter.requested = false;
+	}
+}
@@ -7,19 +7,22 @@ import java.io.IOException;
 import org.phineas.core.PhineasBoundable;
 import org.phineas.core.PhineasDrawable;
 import org.phineas.core.PhineasPlaceable;
+import org.phineas.core.PhineasPoolable;
+import org.phineas.core.PhineasRenderState;
+import org.phineas.core.PhineasStatefulDrawable;
 
 /**
  * Simple 2D drawable image that can be used in Phineas
  * @author Sam Pottinger
  */
-public class PhineasSprite implements PhineasBoundable, PhineasPlaceable, PhineasDrawable, Cloneable
+public class PhineasSprite implements PhineasBoundable, PhineasPlaceable, PhineasStatefulDrawable, PhineasPoolable, Cloneable
 {
-	private Image image;
+	private PhineasImageRegion region;
+	private PhineasRenderState renderState;
 	private int depth;
 	private int x;
 	private int y;
-	private int imageWidth;
-	private int imageHeight;
+	private volatile boolean active = true;
 	
 	/**
 	 * Loads a sprite from the given location
@@ -29,9 +32,7 @@ public class PhineasSprite implements PhineasBoundable, PhineasPlaceable, Phinea
 	 */
 	public PhineasSprite(int newX, int newY, String loc) throws IOException
 	{
-		image = PhineasSpriteLoader.getInstance().loadSprite(loc);
-		imageWidth = image.getWidth(null);
-		imageHeight = image.getHeight(null);
+		region = new PhineasImageRegion(PhineasSpriteLoader.getInstance().loadSprite(loc));
 		depth = PhineasDrawable.DEFAULT_DEPTH;
 		x = newX;
 		y = newY;
@@ -46,9 +47,7 @@ public class PhineasSprite implements PhineasBoundable, PhineasPlaceable, Phinea
 	 */
 	public PhineasSprite(int newX, int newY, String loc, int newDepth) throws IOException
 	{
-		image = PhineasSpriteLoader.getInstance().loadSprite(loc);
-		imageWidth = image.getWidth(null);
-		imageHeight = image.getHeight(null);
+		region = new PhineasImageRegion(PhineasSpriteLoader.getInstance().loadSprite(loc));
 		depth = newDepth;
 		x = newX;
 		y = newY;
@@ -60,9 +59,7 @@ public class PhineasSprite implements PhineasBoundable, PhineasPlaceable, Phinea
 	 */
 	public PhineasSprite(int newX, int newY, Image newImage)
 	{
-		image = newImage;
-		imageWidth = image.getWidth(null);
-		imageHeight = image.getHeight(null);
+		region = new PhineasImageRegion(newImage);
 		depth = PhineasDrawable.DEFAULT_DEPTH;
 		x = newX;
 		y = newY;
@@ -77,9 +74,33 @@ public class PhineasSprite implements PhineasBoundable, PhineasPlaceable, Phinea
 	 */
 	public PhineasSprite(int newX, int newY, Image newImage, int newDepth)
 	{
-		image = newImage;
-		imageWidth = image.getWidth(null);
-		imageHeight = image.getHeight(null);
+		region = new PhineasImageRegion(newImage);
+		depth = newDepth;
+		x = newX;
+		y = newY;
+	}
+	
+	/**
+	 * Creates a new sprite that draws part of a larger image (like a sprite atlas)
+	 * @param newRegion The region of an image that this sprite draws
+	 */
+	public PhineasSprite(int newX, int newY, PhineasImageRegion newRegion)
+	{
+		region = newRegion;
+		depth = PhineasDrawable.DEFAULT_DEPTH;
+		x = newX;
+		y = newY;
+	}
+	
+	/**
+	 * Creates a new sprite that draws part of a larger image (like a sprite atlas)
+	 * @param newRegion The region of an image that this sprite draws
+	 * @param newDepth How far deep this sprite will be drawn (objects
+	 *                 of a deeper depth will be drawn first)
+	 */
+	public PhineasSprite(int newX, int newY, PhineasImageRegion newRegion, int newDepth)
+	{
+		region = newRegion;
 		depth = newDepth;
 		x = newX;
 		y = newY;
@@ -94,7 +115,27 @@ public class PhineasSprite implements PhineasBoundable, PhineasPlaceable, Phinea
 	@Override
 	public void draw(Graphics2D target)
 	{
-		target.drawImage(image, getX(), getY(), null);
+		region.draw(target, getX(), getY());
+	}
+	
+	@Override
+	public PhineasRenderState getRenderState()
+	{
+		if(renderState == null || renderState.getImage() != region.getImage())
+			renderState = new PhineasRenderState(null, null, null, region.getImage());
+		return renderState;
+	}
+	
+	@Override
+	public Object getBatchKey()
+	{
+		return getRenderState();
+	}
+	
+	@Override
+	public void drawStateless(Graphics2D target)
+	{
+		region.draw(target, getX(), getY());
 	}
 	
 	@Override
@@ -112,13 +153,13 @@ public class PhineasSprite implements PhineasBoundable, PhineasPlaceable, Phinea
 	@Override
 	public int getWidth()
 	{
-		return imageWidth;
+		return region.getWidth();
 	}
 	
 	@Override
 	public int getHeight()
 	{
-		return imageHeight;
+		return region.getHeight();
 	}
 	
 	/**
@@ -142,16 +183,37 @@ public class PhineasSprite implements PhineasBoundable, PhineasPlaceable, Phinea
 	@Override
 	public PhineasSprite clone()
 	{
-		return new PhineasSprite(getX(), getY(), image, getDepth());
+		return new PhineasSprite(getX(), getY(), region, getDepth());
 	}
 
 	protected void setImage(Image newImage)
 	{
-		image = newImage;
+		region = new PhineasImageRegion(newImage);
 	}
 	
 	protected void setImage(String loc) throws IOException
 	{
-		image = PhineasSpriteLoader.getInstance().loadSprite(loc);
+		region = new PhineasImageRegion(PhineasSpriteLoader.getInstance().loadSprite(loc));
+	}
+	
+	/**
+	 * Has this sprite draw part of a larger image (like a sprite atlas)
+	 * @param newRegion The region of an image that this sprite should draw
+	 */
+	protected void setImage(PhineasImageRegion newRegion)
+	{
+		region = newRegion;
+	}
+
+	@Override
+	public void setActive(boolean newActive)
+	{
+		active = newActive;
+	}
+	
+	@Override
+	public boolean isActive()
+	{
+		return active;
 	}
 }
@@ -0,0 +1,76 @@
+package org.phineas.contrib;
+
+import java.awt.Image;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Collection of large accelerated images ("pages") that many sprites have been
+ * packed into so that sprites drawn one after another share the same source image
+ * @note Create with PhineasSpriteAtlasBuilder
+ * @author Sam Pottinger
+ */
+public class PhineasSpriteAtlas
+{
+	private List<Image> pages;
+	private Map<String, PhineasImageRegion> regions;
+
+	/**
+	 * Creates a new atlas from already packed pages
+	 * @param newPages The images that sprites were packed into
+	 * @param newRegions Where each named sprite lives within those pages
+	 */
+	PhineasSpriteAtlas(List<Image> newPages, Map<String, PhineasImageRegion> newRegions)
+	{
+		pages = Collections.unmodifiableList(newPages);
+		regions = Collections.unmodifiableMap(newRegions);
+	}
+
+	/**
+	 * Get the region of this atlas that holds the sprite with the given name
+	 * @param name The name (usually the resource location) the sprite was added with
+	 * @return The region holding the sprite or null if it is not in this atlas
+	 */
+	public PhineasImageRegion getRegion(String name)
+	{
+		return regions.get(name);
+	}
+
+	/**
+	 * Determine if this atlas contains a sprite with the given name
+	 * @param name The name (usually the resource location) the sprite was added with
+	 * @return true if this atlas has the sprite, false otherwise
+	 */
+	public boolean hasRegion(String name)
+	{
+		return regions.containsKey(name);
+	}
+
+	/**
+	 * Create a new sprite that draws the named region of this atlas
+	 * @param newX The starting x position of the new sprite
+	 * @param newY The starting y position of the new sprite
+	 * @param name The name (usually the resource location) the sprite was added with
+	 * @param newDepth How far deep the new sprite will be drawn
+	 * @return Newly created sprite
+	 * @throws IOException Thrown if this atlas does not have the named sprite
+	 */
+	public PhineasSprite createSprite(int newX, int newY, String name, int newDepth) throws IOException
+	{
+		PhineasImageRegion region = getRegion(name);
+		if(region == null)
+			throw new IOException("Sprite atlas does not contain " + name);
+		return new PhineasSprite(newX, newY, region, newDepth);
+	}
+
+	/**
+	 * Get the images that sprites were packed into
+	 * @return Unmodifiable list of this atlas' pages
+	 */
+	public List<Image> getPages()
+	{
+		return pages;
+	}
+}
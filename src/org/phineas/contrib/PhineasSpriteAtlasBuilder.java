@@ -0,0 +1,165 @@
+package org.phineas.contrib;
+
+import java.awt.Graphics2D;
+import java.awt.Image;
+import java.awt.Transparency;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Builder that packs many small sprites into a few large accelerated images
+ * using shelf packing
+ * @author Sam Pottinger
+ */
+public class PhineasSpriteAtlasBuilder
+{
+	public static final int DEFAULT_PAGE_SIZE = 1024;
+	private static final int PADDING = 1;
+
+	private int pageSize;
+	private Map<String, Image> sources;
+
+	/**
+	 * Creates a new builder for atlases whose pages are DEFAULT_PAGE_SIZE pixels square
+	 */
+	public PhineasSpriteAtlasBuilder()
+	{
+		this(DEFAULT_PAGE_SIZE);
+	}
+
+	/**
+	 * Creates a new builder for atlases with the given page size
+	 * @param newPageSize The maximum width and height in pixels of each atlas page
+	 */
+	public PhineasSpriteAtlasBuilder(int newPageSize)
+	{
+		pageSize = newPageSize;
+		sources = new LinkedHashMap<String, Image>();
+	}
+
+	/**
+	 * Loads the sprite at the given location and queues it to be packed
+	 * @param loc The location of the image to load, also used as its name in the atlas
+	 * @return This builder
+	 * @throws IOException Thrown if the sprite could not be loaded
+	 */
+	public PhineasSpriteAtlasBuilder add(String loc) throws IOException
+	{
+		return add(loc, PhineasSpriteLoader.getInstance().loadSprite(loc));
+	}
+
+	/**
+	 * Queues an already loaded image to be packed
+	 * @param name The name that the image can be retrieved by from the atlas
+	 * @param image The image to pack
+	 * @return This builder
+	 */
+	public PhineasSpriteAtlasBuilder add(String name, Image image)
+	{
+		sources.put(name, image);
+		return this;
+	}
+
+	/**
+	 * Packs all of the queued images into a new atlas
+	 * @return Newly created atlas
+	 */
+	public PhineasSpriteAtlas build()
+	{
+		List<String> names;
+		Map<String, int[]> placements;
+		List<int[]> pageSizes;
+		List<Image> pages;
+		Map<String, PhineasImageRegion> regions;
+		int page;
+		int shelfX;
+		int shelfY;
+		int shelfHeight;
+		int width;
+		int height;
+
+		// Taller images first keeps shelves tightly packed
+		names = new ArrayList<String>(sources.keySet());
+		Collections.sort(names, new Comparator<String>()
+		{
+			@Override
+			public int compare(String a, String b)
+			{
+				return sources.get(b).getHeight(null) - sources.get(a).getHeight(null);
+			}
+		});
+
+		// Figure out where everything goes ({page, x, y})
+		placements = new HashMap<String, int[]>();
+		pageSizes = new ArrayList<int[]>();
+		page = -1;
+		shelfX = 0;
+		shelfY = 0;
+		shelfHeight = 0;
+		for(String name : names)
+		{
+			width = sources.get(name).getWidth(null);
+			height = sources.get(name).getHeight(null);
+
+			// Images too big for a page get one of their own
+			if(width > pageSize || height > pageSize)
+			{
+				pageSizes.add(new int[] {width, height});
+				placements.put(name, new int[] {pageSizes.size() - 1, 0, 0});
+				continue;
+			}
+
+			// Start a new shelf or page if needed
+			if(page != -1 && shelfX + width > pageSize)
+			{
+				shelfX = 0;
+				shelfY += shelfHeight + PADDING;
+				shelfHeight = 0;
+			}
+			if(page == -1 || shelfY + height > pageSize)
+			{
+				pageSizes.add(new int[] {0, 0});
+				page = pageSizes.size() - 1;
+				shelfX = 0;
+				shelfY = 0;
+				shelfHeight = 0;
+			}
+
+			placements.put(name, new int[] {page, shelfX, shelfY});
+			shelfX += width + PADDING;
+			shelfHeight = Math.max(shelfHeight, height);
+
+			// Only make pages as big as they need to be
+			pageSizes.get(page)[0] = Math.max(pageSizes.get(page)[0], shelfX - PADDING);
+			pageSizes.get(page)[1] = Math.max(pageSizes.get(page)[1], shelfY + height);
+		}
+
+		// Create accelerated pages (translucent so antialiased sprite edges survive)
+		pages = new ArrayList<Image>();
+		for(int[] size : pageSizes)
+			pages.add(PhineasImageUtil.createCompatibleImage(size[0], size[1], Transparency.TRANSLUCENT));
+
+		// Copy sprites into pages
+		regions = new HashMap<String, PhineasImageRegion>();
+		for(String name : names)
+		{
+			int[] placement = placements.get(name);
+			Image source = sources.get(name);
+			Image target = pages.get(placement[0]);
+			Graphics2D graphics = (Graphics2D)target.getGraphics();
+			graphics.drawImage(source, placement[1], placement[2], null);
+			graphics.dispose();
+
+			regions.put(name, new PhineasImageRegion(target, placement[1], placement[2],
+					source.getWidth(null), source.getHeight(null)));
+		}
+
+		return new PhineasSpriteAtlas(pages, regions);
+	}
+}
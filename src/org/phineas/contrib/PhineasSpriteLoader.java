@@ -6,8 +6,10 @@ import java.awt.Image;
 import java.awt.Transparency;
 import java.io.IOException;
 import java.net.URL;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Future;
 
 import javax.imageio.ImageIO;
 
@@ -18,11 +20,15 @@ import javax.imageio.ImageIO;
  * sprites from URLs
  * @author Sam Pottinger
  */
-class PhineasSpriteLoader
+public class PhineasSpriteLoader
 {
-	private static PhineasSpriteLoader instance = null;
+	public static final long DEFAULT_CACHE_BUDGET = 128L * 1024 * 1024;
+	private static final int BYTES_PER_PIXEL = 4;
 	
-	private Map<String, Image> images;
+	private static final PhineasSpriteLoader instance = new PhineasSpriteLoader();
+	
+	private PhineasAssetCache<Image> images;
+	private List<PhineasAssetArchive> archives;
 	
 	/**
 	 * Get access to a shared instance of this sprite factory
@@ -30,8 +36,6 @@ class PhineasSpriteLoader
 	 */
 	public static PhineasSpriteLoader getInstance()
 	{
-		if(instance == null)
-			instance = new PhineasSpriteLoader();
 		return instance;
 	}
 	
@@ -40,7 +44,68 @@ class PhineasSpriteLoader
 	 */
 	private PhineasSpriteLoader()
 	{
-		images = new HashMap<String, Image>();
+		images = new PhineasAssetCache<Image>(DEFAULT_CACHE_BUDGET, new PhineasAssetCache.Weigher<Image>()
+		{
+			@Override
+			public long weigh(Image value)
+			{
+				return (long)value.getWidth(null) * value.getHeight(null) * BYTES_PER_PIXEL;
+			}
+		}, null);
+		archives = new CopyOnWriteArrayList<PhineasAssetArchive>();
+	}
+	
+	/**
+	 * Have this loader read images from the given archive before falling back
+	 * to individual resources
+	 * @param archive The archive to read images from
+	 */
+	public void mountArchive(PhineasAssetArchive archive)
+	{
+		archives.add(archive);
+	}
+	
+	/**
+	 * Stop reading images from the given archive
+	 * @param archive The archive to no longer read images from
+	 */
+	public void unmountArchive(PhineasAssetArchive archive)
+	{
+		archives.remove(archive);
+	}
+	
+	/**
+	 * Get the cache this loader keeps images in (for adjusting its budget or
+	 * reading its hit, miss and eviction counts)
+	 * @return This loader's image cache
+	 */
+	public PhineasAssetCache<Image> getCache()
+	{
+		return images;
+	}
+	
+	/**
+	 * Loads the image from the given location and pins it in the cache so
+	 * that it is not evicted until releaseSprite is called
+	 * @param loc The location of the image to load
+	 * @return Image loaded from that location
+	 * @throws IOException
+	 */
+	public Image acquireSprite(String loc) throws IOException
+	{
+		Image image = images.acquire(loc);
+		if(image != null)
+			return image;
+		return images.putIfAbsentAndAcquire(loc, decodeSprite(loc));
+	}
+	
+	/**
+	 * Unpins an image pinned with acquireSprite
+	 * @param loc The location of the image
+	 */
+	public void releaseSprite(String loc)
+	{
+		images.release(loc);
 	}
 	
 	/**
@@ -53,12 +118,41 @@ class PhineasSpriteLoader
 	public Image loadSprite(String loc) throws IOException
 	{
 		// Load from cache if possible
-		if(images.containsKey(loc))
-			return images.get(loc);
+		Image cachedImage = images.get(loc);
+		if(cachedImage != null)
+			return cachedImage;
 		
-		// Load image
-		URL url = this.getClass().getClassLoader().getResource(loc);
-		Image targetImage = ImageIO.read(url);
+		// Cache (if another thread beat us to it, use its copy)
+		return images.putIfAbsent(loc, decodeSprite(loc));
+	}
+	
+	/**
+	 * Reads the image at the given location into an accelerated image
+	 * @param loc The location of the image to load
+	 * @return Newly decoded image
+	 * @throws IOException
+	 */
+	private Image decodeSprite(String loc) throws IOException
+	{
+		PhineasAssetLoadEvent event = new PhineasAssetLoadEvent();
+		event.begin();
+		
+		// Load image (pre-decoded from an archive if possible)
+		Image targetImage = null;
+		for(PhineasAssetArchive archive : archives)
+		{
+			if(archive.hasImage(loc))
+			{
+				targetImage = archive.readImage(loc);
+				event.fromArchive = true;
+				break;
+			}
+		}
+		if(targetImage == null)
+		{
+			URL url = this.getClass().getClassLoader().getResource(loc);
+			targetImage = ImageIO.read(url);
+		}
 		
 		// create an accelerated image of the right size to store our sprite in
 		GraphicsConfiguration gc = GraphicsEnvironment.
@@ -72,9 +166,34 @@ class PhineasSpriteLoader
 		                                       Transparency.BITMASK);
 		compatableImage.getGraphics().drawImage(targetImage, 0, 0, null);
 		
-		// Cache
-		images.put(loc, compatableImage);
+		if(event.shouldCommit())
+		{
+			event.location = loc;
+			event.kind = PhineasAssetLoadEvent.KIND_IMAGE;
+			event.bytes = (long)compatableImage.getWidth(null) * compatableImage.getHeight(null) * BYTES_PER_PIXEL;
+			event.commit();
+		}
 		
 		return compatableImage;
 	}
+	
+	/**
+	 * Decodes the images at the given locations in parallel on background threads,
+	 * placing them in this loader's cache as each one finishes
+	 * @param locs The locations of the images to load (like a level's manifest)
+	 * @param listener Listener to report progress to (may be null)
+	 * @return One future for each image, in the order given
+	 */
+	public List<Future<Image>> preloadSprites(Collection<String> locs, PhineasPreloadListener listener)
+	{
+		return PhineasAssetExecutor.getInstance().preload(locs, listener,
+				new PhineasAssetExecutor.AssetTask<Image>()
+			{
+				@Override
+				public Image load(String loc) throws Exception
+				{
+					return loadSprite(loc);
+				}
+			});
+	}
 }
@@ -0,0 +1,80 @@
+package org.phineas.contrib;
+
+import java.awt.Image;
+import java.io.IOException;
+
+/**
+ * Image made up of a grid of equally sized frames, read left to right
+ * and then top to bottom
+ * @author Sam Pottinger
+ */
+public class PhineasSpriteSheet
+{
+	private PhineasImageRegion[] frames;
+
+	/**
+	 * Loads a sprite sheet from the given location
+	 * @param loc The location of the sheet image
+	 * @param frameWidth The width of each frame in pixels
+	 * @param frameHeight The height of each frame in pixels
+	 * @throws IOException Thrown if the sheet could not be loaded
+	 */
+	public PhineasSpriteSheet(String loc, int frameWidth, int frameHeight) throws IOException
+	{
+		this(new PhineasImageRegion(PhineasSpriteLoader.getInstance().loadSprite(loc)),
+				frameWidth, frameHeight);
+	}
+
+	/**
+	 * Creates a sprite sheet out of an already loaded image
+	 * @param image The sheet image
+	 * @param frameWidth The width of each frame in pixels
+	 * @param frameHeight The height of each frame in pixels
+	 */
+	public PhineasSpriteSheet(Image image, int frameWidth, int frameHeight)
+	{
+		this(new PhineasImageRegion(image), frameWidth, frameHeight);
+	}
+
+	/**
+	 * Creates a sprite sheet out of part of a larger image (like a sprite atlas)
+	 * @param source The region of an image holding the sheet
+	 * @param frameWidth The width of each frame in pixels
+	 * @param frameHeight The height of each frame in pixels
+	 */
+	public PhineasSpriteSheet(PhineasImageRegion source, int frameWidth, int frameHeight)
+	{
+		int columns = source.getWidth() / frameWidth;
+		int rows = source.getHeight() / frameHeight;
+
+		frames = new PhineasImageRegion[columns * rows];
+		for(int row = 0; row < rows; row++)
+		{
+			for(int column = 0; column < columns; column++)
+			{
+				frames[row * columns + column] = new PhineasImageRegion(source.getImage(),
+						source.getX() + column * frameWidth, source.getY() + row * frameHeight,
+						frameWidth, frameHeight);
+			}
+		}
+	}
+
+	/**
+	 * Get a single frame of this sheet
+	 * @param index The index of the frame (counting left to right, top to bottom)
+	 * @return Region of the sheet image holding that frame
+	 */
+	public PhineasImageRegion getFrame(int index)
+	{
+		return frames[index];
+	}
+
+	/**
+	 * Get how many frames are on this sheet
+	 * @return Number of frames that fit in this sheet's grid
+	 */
+	public int getFrameCount()
+	{
+		return frames.length;
+	}
+}
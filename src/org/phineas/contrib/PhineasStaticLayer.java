@@ -0,0 +1,256 @@
+package org.phineas.contrib;
+
+import java.awt.AlphaComposite;
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.Transparency;
+import java.awt.image.VolatileImage;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import org.phineas.core.PhineasBoundable;
+import org.phineas.core.PhineasDrawable;
+
+/**
+ * Group of rarely changing drawables (backgrounds, tiles, HUD frames) that is
+ * rasterized once into an accelerated image and then drawn with a single
+ * drawImage call per frame. A layer can be limited to the drawables of a range
+ * of depths, in which case it is drawn as a whole at the deepest end of that
+ * range: members are ordered by depth amongst themselves, entities outside the
+ * range are ordered correctly against all of them and other entities inside it
+ * are drawn on top of the whole layer.
+ * @note Members should not also be added to the game directly. The layer
+ *       can't tell when a member changes, so call invalidate after moving or
+ *       changing one to have the layer rebuilt on the next draw.
+ * @author Sam Pottinger
+ */
+public class PhineasStaticLayer implements PhineasBoundable, PhineasDrawable
+{
+	private int x;
+	private int y;
+	private int width;
+	private int height;
+	private int depth;
+	private int minDepth;
+	private int maxDepth;
+	private List<PhineasDrawable> members;
+	private VolatileImage cache;
+	private boolean dirty;
+
+	/**
+	 * Creates a new empty static layer covering the given area
+	 * @param newX The x position of the upper left corner of this layer
+	 * @param newY The y position of the upper left corner of this layer
+	 * @param newWidth The width in pixels of the area this layer caches
+	 * @param newHeight The height in pixels of the area this layer caches
+	 */
+	public PhineasStaticLayer(int newX, int newY, int newWidth, int newHeight)
+	{
+		this(newX, newY, newWidth, newHeight, PhineasDrawable.DEFAULT_DEPTH);
+	}
+
+	/**
+	 * Creates a new empty static layer covering the given area
+	 * @param newX The x position of the upper left corner of this layer
+	 * @param newY The y position of the upper left corner of this layer
+	 * @param newWidth The width in pixels of the area this layer caches
+	 * @param newHeight The height in pixels of the area this layer caches
+	 * @param newDepth The depth at which the whole layer is drawn (members are
+	 *                 still ordered amongst themselves by their own depths)
+	 */
+	public PhineasStaticLayer(int newX, int newY, int newWidth, int newHeight, int newDepth)
+	{
+		x = newX;
+		y = newY;
+		width = newWidth;
+		height = newHeight;
+		depth = newDepth;
+		minDepth = Integer.MIN_VALUE;
+		maxDepth = Integer.MAX_VALUE;
+		members = new ArrayList<PhineasDrawable>();
+		dirty = true;
+	}
+
+	/**
+	 * Creates a new empty static layer for the drawables of a range of depths
+	 * @param newX The x position of the upper left corner of this layer
+	 * @param newY The y position of the upper left corner of this layer
+	 * @param newWidth The width in pixels of the area this layer caches
+	 * @param newHeight The height in pixels of the area this layer caches
+	 * @param newMinDepth The shallowest depth a member may have
+	 * @param newMaxDepth The deepest depth a member may have, which is also
+	 *                    the depth the whole layer is drawn at
+	 */
+	public PhineasStaticLayer(int newX, int newY, int newWidth, int newHeight, int newMinDepth,
+			int newMaxDepth)
+	{
+		this(newX, newY, newWidth, newHeight, newMaxDepth);
+		if(newMinDepth > newMaxDepth)
+			throw new IllegalArgumentException("Minimum depth is deeper than maximum depth");
+		minDepth = newMinDepth;
+		maxDepth = newMaxDepth;
+	}
+
+	/**
+	 * Adds a drawable to this layer, causing the layer to be rebuilt
+	 * @param newMember The drawable to rasterize as part of this layer
+	 * @throws IllegalArgumentException Thrown if the drawable's depth is outside
+	 *                                  this layer's depth range
+	 */
+	public void add(PhineasDrawable newMember)
+	{
+		int memberDepth = newMember.getDepth();
+		if(memberDepth < minDepth || memberDepth > maxDepth)
+		{
+			throw new IllegalArgumentException("Depth " + memberDepth + " is outside of this layer's range "
+					+ minDepth + " to " + maxDepth);
+		}
+		members.add(newMember);
+		dirty = true;
+	}
+
+	/**
+	 * Removes a drawable from this layer, causing the layer to be rebuilt
+	 * @param oldMember The drawable to no longer draw as part of this layer
+	 */
+	public void remove(PhineasDrawable oldMember)
+	{
+		if(members.remove(oldMember))
+			dirty = true;
+	}
+
+	/**
+	 * Removes all drawables from this layer
+	 */
+	public void clear()
+	{
+		members.clear();
+		dirty = true;
+	}
+
+	/**
+	 * Get the number of drawables that make up this layer
+	 * @return Number of members in this layer
+	 */
+	public int getMemberCount()
+	{
+		return members.size();
+	}
+
+	/**
+	 * Indicate that a member of this layer changed and that the layer
+	 * needs to be rasterized again before it is next drawn
+	 */
+	public void invalidate()
+	{
+		dirty = true;
+	}
+
+	@Override
+	public void draw(Graphics2D target)
+	{
+		GraphicsConfiguration gc = target.getDeviceConfiguration();
+		int status;
+
+		do
+		{
+			// Make sure the accelerated image is still usable
+			status = cache == null ? VolatileImage.IMAGE_INCOMPATIBLE : cache.validate(gc);
+			if(status == VolatileImage.IMAGE_INCOMPATIBLE)
+			{
+				if(cache != null)
+					cache.flush();
+				cache = gc.createCompatibleVolatileImage(width, height, Transparency.TRANSLUCENT);
+				dirty = true;
+			}
+			else if(status == VolatileImage.IMAGE_RESTORED)
+				dirty = true;
+
+			if(dirty)
+				rasterize();
+
+			target.drawImage(cache, x, y, null);
+		} while(cache.contentsLost());
+	}
+
+	/**
+	 * Draws all of the members of this layer onto the cached image
+	 */
+	private void rasterize()
+	{
+		Graphics2D graphics = cache.createGraphics();
+
+		// Clear to fully transparent
+		graphics.setComposite(AlphaComposite.Clear);
+		graphics.fillRect(0, 0, width, height);
+		graphics.setComposite(AlphaComposite.SrcOver);
+
+		// Draw deepest members first, in layer local coordinates
+		Collections.sort(members, new Comparator<PhineasDrawable>()
+		{
+			@Override
+			public int compare(PhineasDrawable a, PhineasDrawable b)
+			{
+				int aDepth = a.getDepth();
+				int bDepth = b.getDepth();
+				return aDepth > bDepth ? -1 : (aDepth == bDepth ? 0 : 1);
+			}
+		});
+		graphics.translate(-x, -y);
+		for(PhineasDrawable member : members)
+			member.draw(graphics);
+
+		graphics.dispose();
+		dirty = false;
+	}
+
+	/**
+	 * Get the shallowest depth a member of this layer may have
+	 * @return Minimum member depth
+	 */
+	public int getMinDepth()
+	{
+		return minDepth;
+	}
+
+	/**
+	 * Get the deepest depth a member of this layer may have
+	 * @return Maximum member depth
+	 */
+	public int getMaxDepth()
+	{
+		return maxDepth;
+	}
+
+	@Override
+	public int getDepth()
+	{
+		return depth;
+	}
+
+	@Override
+	public int getX()
+	{
+		return x;
+	}
+
+	@Override
+	public int getY()
+	{
+		return y;
+	}
+
+	@Override
+	public int getWidth()
+	{
+		return width;
+	}
+
+	@Override
+	public int getHeight()
+	{
+		return height;
+	}
+}
@@ -6,12 +6,15 @@ import java.awt.Graphics2D;
 
 import org.phineas.core.PhineasDrawable;
 import org.phineas.core.PhineasPlaceable;
+import org.phineas.core.PhineasPoolable;
+import org.phineas.core.PhineasRenderState;
+import org.phineas.core.PhineasStatefulDrawable;
 
 /**
  * Colorable text abstraction for Phineas-powered applications
  * @author Sam Pottinger
  */
-public class PhineasText implements PhineasPlaceable, PhineasDrawable
+public class PhineasText implements PhineasPlaceable, PhineasStatefulDrawable, PhineasPoolable
 {
 	private int x;
 	private int y;
@@ -19,6 +22,11 @@ public class PhineasText implements PhineasPlaceable, PhineasDrawable
 	private Color color;
 	private int depth;
 	private Font font;
+	private PhineasRenderState renderState;
+	private boolean cacheRendering;
+	private PhineasTextImageCache.RenderedText cachedText;
+	private PhineasBitmapFont bitmapFont;
+	private volatile boolean active = true;
 	
 	/**
 	 * Creates a new text abstraction
@@ -62,6 +70,7 @@ public class PhineasText implements PhineasPlaceable, PhineasDrawable
 	public void setText(String newText)
 	{
 		text = newText;
+		cachedText = null;
 	}
 	
 	/**
@@ -71,6 +80,8 @@ public class PhineasText implements PhineasPlaceable, PhineasDrawable
 	public void setColor(Color newColor)
 	{
 		color = newColor;
+		cachedText = null;
+		updateRenderState();
 	}
 	
 	/**
@@ -80,6 +91,35 @@ public class PhineasText implements PhineasPlaceable, PhineasDrawable
 	public void setFont(Font newFont)
 	{
 		font = newFont;
+		cachedText = null;
+		updateRenderState();
+	}
+	
+	/**
+	 * Sets if this text should be drawn from a shared cache of pre-rendered
+	 * strings instead of being laid out every frame (best for text that
+	 * rarely changes)
+	 * @param newCacheRendering true to draw from PhineasTextImageCache, false
+	 *                          to draw the string directly
+	 */
+	public void setCacheRendering(boolean newCacheRendering)
+	{
+		cacheRendering = newCacheRendering;
+		cachedText = null;
+		updateRenderState();
+	}
+	
+	/**
+	 * Sets a pre-rendered font for this text to be drawn with (best for text
+	 * like scores and timers that changes every frame). The bitmap font's own
+	 * font and color are used instead of this object's.
+	 * @param newBitmapFont The bitmap font to draw with or null to go back to
+	 *                      drawing with this object's font
+	 */
+	public void setBitmapFont(PhineasBitmapFont newBitmapFont)
+	{
+		bitmapFont = newBitmapFont;
+		updateRenderState();
 	}
 	
 	/**
@@ -96,15 +136,59 @@ public class PhineasText implements PhineasPlaceable, PhineasDrawable
 	 */
 	private void setupDefaultFont()
 	{
-		font = new Font(Font.SANS_SERIF, Font.PLAIN, 12);
+		font = PhineasFontCache.getInstance().getFont(Font.SANS_SERIF, Font.PLAIN, 12);
+		updateRenderState();
+	}
+	
+	/**
+	 * Rebuild the shared description of how this text is drawn
+	 */
+	private void updateRenderState()
+	{
+		if(bitmapFont != null)
+			renderState = new PhineasRenderState(null, null, null, bitmapFont.getImage());
+		else if(cacheRendering)
+			renderState = new PhineasRenderState(null, null, null, null);
+		else
+			renderState = new PhineasRenderState(color, null, font, null);
 	}
 	
 	@Override
 	public void draw(Graphics2D target)
 	{
-		target.setColor(color);
-		target.setFont(font);
-		target.drawString(text, getX(), getY());
+		if(bitmapFont == null && !cacheRendering)
+		{
+			target.setColor(color);
+			target.setFont(font);
+		}
+		drawStateless(target);
+	}
+	
+	@Override
+	public PhineasRenderState getRenderState()
+	{
+		return renderState;
+	}
+	
+	@Override
+	public Object getBatchKey()
+	{
+		return renderState;
+	}
+	
+	@Override
+	public void drawStateless(Graphics2D target)
+	{
+		if(bitmapFont != null)
+			bitmapFont.draw(target, text, getX(), getY());
+		else if(cacheRendering)
+		{
+			if(cachedText == null)
+				cachedText = PhineasTextImageCache.getInstance().getText(text, font, color);
+			cachedText.draw(target, getX(), getY());
+		}
+		else
+			target.drawString(text, getX(), getY());
 	}
 
 	@Override
@@ -137,4 +221,15 @@ public class PhineasText implements PhineasPlaceable, PhineasDrawable
 		return y;
 	}
 
+	@Override
+	public void setActive(boolean newActive)
+	{
+		active = newActive;
+	}
+	
+	@Override
+	public boolean isActive()
+	{
+		return active;
+	}
 }
@@ -0,0 +1,199 @@
+package org.phineas.contrib;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics2D;
+import java.awt.Transparency;
+import java.awt.image.BufferedImage;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Least recently used cache of strings that have already been laid out and
+ * rasterized, keyed by their text, font and color
+ * @author Sam Pottinger
+ */
+public class PhineasTextImageCache
+{
+	public static final int DEFAULT_CAPACITY = 512;
+
+	private static final PhineasTextImageCache instance = new PhineasTextImageCache();
+
+	private LinkedHashMap<Key, RenderedText> entries;
+	private int capacity;
+	private FontMetrics metricsSource;
+	private Graphics2D metricsGraphics;
+
+	/**
+	 * Image of a rendered string along with where its baseline is
+	 */
+	public static class RenderedText
+	{
+		private final BufferedImage image;
+		private final int ascent;
+
+		RenderedText(BufferedImage newImage, int newAscent)
+		{
+			image = newImage;
+			ascent = newAscent;
+		}
+
+		/**
+		 * Draws this text with its baseline starting at the given position
+		 * @param target The context to draw on
+		 * @param x The x coordinate the text starts at
+		 * @param baselineY The y coordinate of the text's baseline
+		 */
+		public void draw(Graphics2D target, int x, int baselineY)
+		{
+			target.drawImage(image, x, baselineY - ascent, null);
+		}
+
+		/**
+		 * Get the rendered text
+		 * @return Image with the text drawn on it
+		 */
+		public BufferedImage getImage()
+		{
+			return image;
+		}
+	}
+
+	/**
+	 * Get access to a shared instance of this cache
+	 * @return Shared instance of this singleton
+	 */
+	public static PhineasTextImageCache getInstance()
+	{
+		return instance;
+	}
+
+	/**
+	 * Private constructor for this singleton
+	 */
+	private PhineasTextImageCache()
+	{
+		capacity = DEFAULT_CAPACITY;
+		entries = new LinkedHashMap<Key, RenderedText>(16, 0.75f, true)
+		{
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Key, RenderedText> eldest)
+			{
+				return size() > capacity;
+			}
+		};
+	}
+
+	/**
+	 * Set how many rendered strings this cache holds on to
+	 * @param newCapacity The maximum number of entries before the least
+	 *                    recently used ones are evicted
+	 */
+	public synchronized void setCapacity(int newCapacity)
+	{
+		capacity = newCapacity;
+		while(entries.size() > capacity)
+			entries.remove(entries.keySet().iterator().next());
+	}
+
+	/**
+	 * Get the rendered image of the given text, rendering it if needed
+	 * @param text The string to render
+	 * @param font The font to render the string in
+	 * @param color The color to render the string in
+	 * @return Cache entry holding the rendered text
+	 */
+	public synchronized RenderedText getText(String text, Font font, Color color)
+	{
+		Key key = new Key(text, font, color);
+		RenderedText entry = entries.get(key);
+		if(entry == null)
+		{
+			entry = render(text, font, color);
+			entries.put(key, entry);
+		}
+		return entry;
+	}
+
+	/**
+	 * Drop all rendered strings
+	 */
+	public synchronized void clear()
+	{
+		entries.clear();
+	}
+
+	/**
+	 * Lay out and rasterize a string
+	 */
+	private RenderedText render(String text, Font font, Color color)
+	{
+		FontMetrics metrics = getMetrics(font);
+		int width = Math.max(1, metrics.stringWidth(text));
+		int height = Math.max(1, metrics.getAscent() + metrics.getDescent());
+
+		BufferedImage image = PhineasImageUtil.createCompatibleImage(width, height,
+				Transparency.TRANSLUCENT);
+		Graphics2D graphics = image.createGraphics();
+		graphics.setFont(font);
+		graphics.setColor(color);
+		graphics.drawString(text, 0, metrics.getAscent());
+		graphics.dispose();
+
+		return new RenderedText(image, metrics.getAscent());
+	}
+
+	/**
+	 * Get metrics for the given font without needing a visible component
+	 */
+	private FontMetrics getMetrics(Font font)
+	{
+		if(metricsGraphics == null)
+			metricsGraphics = new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB).createGraphics();
+		if(font == null)
+			font = metricsGraphics.getFont();
+		if(metricsSource == null || !metricsSource.getFont().equals(font))
+			metricsSource = metricsGraphics.getFontMetrics(font);
+		return metricsSource;
+	}
+
+	/**
+	 * Identity of a rendered string
+	 */
+	private static class Key
+	{
+		private final String text;
+		private final Font font;
+		private final Color color;
+		private final int hash;
+
+		public Key(String newText, Font newFont, Color newColor)
+		{
+			text = newText;
+			font = newFont;
+			color = newColor;
+			// A null font or color renders with the graphics' defaults
+			hash = 31 * (31 * text.hashCode() + Objects.hashCode(font)) + Objects.hashCode(color);
+		}
+
+		@Override
+		public boolean equals(Object other)
+		{
+			if(!(other instanceof Key))
+				return false;
+			Key otherKey = (Key)other;
+			return hash == otherKey.hash && text.equals(otherKey.text)
+					&& Objects.equals(font, otherKey.font) && Objects.equals(color, otherKey.color);
+		}
+
+		@Override
+		public int hashCode()
+		{
+			return hash;
+		}
+	}
+}
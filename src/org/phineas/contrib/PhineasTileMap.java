@@ -0,0 +1,351 @@
+package org.phineas.contrib;
+
+import java.awt.AlphaComposite;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.Transparency;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+
+import org.phineas.core.PhineasBoundable;
+import org.phineas.core.PhineasDrawable;
+
+/**
+ * Grid of tiles drawn as a single entity. Tiles are stored as indices into a
+ * tileset, the grid is pre-rendered in square chunks that are only redrawn when
+ * one of their tiles changes, and only chunks that are on screen get drawn.
+ * Tiles can be marked solid and queried for collisions without each tile being
+ * its own entity.
+ * @author Sam Pottinger
+ */
+public class PhineasTileMap implements PhineasBoundable, PhineasDrawable
+{
+	public static final int EMPTY = -1;
+	public static final int DEFAULT_CHUNK_TILES = 16;
+
+	private final int x;
+	private final int y;
+	private final int columns;
+	private final int rows;
+	private final int tileWidth;
+	private final int tileHeight;
+	private final int depth;
+	private final PhineasImageRegion[] tileset;
+	private final boolean[] solid;
+	private final int[] tiles;
+
+	private final int chunkTiles;
+	private final int chunkColumns;
+	private final int chunkRows;
+	private final BufferedImage[] chunks;
+	private final boolean[] dirtyChunks;
+
+	private Rectangle viewport;
+
+	/**
+	 * Creates a new empty tile map
+	 * @param newX The x position of the map's left edge
+	 * @param newY The y position of the map's top edge
+	 * @param newColumns The number of tiles across
+	 * @param newRows The number of tiles down
+	 * @param newTileset The images for each tile index (like the frames of a
+	 *                   PhineasSpriteSheet), all tileWidth by tileHeight
+	 * @param newTileWidth The width of each tile in pixels
+	 * @param newTileHeight The height of each tile in pixels
+	 * @param newDepth The depth to draw this map at
+	 */
+	public PhineasTileMap(int newX, int newY, int newColumns, int newRows, PhineasImageRegion[] newTileset,
+			int newTileWidth, int newTileHeight, int newDepth)
+	{
+		this(newX, newY, newColumns, newRows, newTileset, newTileWidth, newTileHeight, newDepth,
+				DEFAULT_CHUNK_TILES);
+	}
+
+	/**
+	 * Creates a new empty tile map
+	 * @param newX The x position of the map's left edge
+	 * @param newY The y position of the map's top edge
+	 * @param newColumns The number of tiles across
+	 * @param newRows The number of tiles down
+	 * @param newTileset The images for each tile index, all tileWidth by tileHeight
+	 * @param newTileWidth The width of each tile in pixels
+	 * @param newTileHeight The height of each tile in pixels
+	 * @param newDepth The depth to draw this map at
+	 * @param newChunkTiles The width and height of each pre-rendered chunk in tiles
+	 */
+	public PhineasTileMap(int newX, int newY, int newColumns, int newRows, PhineasImageRegion[] newTileset,
+			int newTileWidth, int newTileHeight, int newDepth, int newChunkTiles)
+	{
+		x = newX;
+		y = newY;
+		columns = newColumns;
+		rows = newRows;
+		tileset = newTileset.clone();
+		tileWidth = newTileWidth;
+		tileHeight = newTileHeight;
+		depth = newDepth;
+		solid = new boolean[tileset.length];
+		tiles = new int[columns * rows];
+		Arrays.fill(tiles, EMPTY);
+
+		chunkTiles = newChunkTiles;
+		chunkColumns = (columns + chunkTiles - 1) / chunkTiles;
+		chunkRows = (rows + chunkTiles - 1) / chunkTiles;
+		chunks = new BufferedImage[chunkColumns * chunkRows];
+		dirtyChunks = new boolean[chunks.length];
+	}
+
+	/**
+	 * Set which tile is at a grid position
+	 * @param column The column of the tile to change
+	 * @param row The row of the tile to change
+	 * @param tile Index into the tileset or EMPTY
+	 */
+	public void setTile(int column, int row, int tile)
+	{
+		int index = row * columns + column;
+		if(tiles[index] == tile)
+			return;
+		tiles[index] = tile;
+		dirtyChunks[(row / chunkTiles) * chunkColumns + column / chunkTiles] = true;
+	}
+
+	/**
+	 * Replace every tile at once
+	 * @param newTiles Tileset indices in row major order, columns * rows long
+	 */
+	public void setTiles(int[] newTiles)
+	{
+		if(newTiles.length != tiles.length)
+			throw new IllegalArgumentException("Expected " + tiles.length + " tiles");
+		System.arraycopy(newTiles, 0, tiles, 0, tiles.length);
+		Arrays.fill(dirtyChunks, true);
+	}
+
+	/**
+	 * Get which tile is at a grid position
+	 * @param column The column of the tile
+	 * @param row The row of the tile
+	 * @return Index into the tileset or EMPTY (also returned off the map)
+	 */
+	public int getTile(int column, int row)
+	{
+		if(column < 0 || row < 0 || column >= columns || row >= rows)
+			return EMPTY;
+		return tiles[row * columns + column];
+	}
+
+	/**
+	 * Mark a kind of tile as something entities collide with
+	 * @param tile Index into the tileset
+	 * @param newSolid If true, tiles of this kind are reported by collision queries
+	 */
+	public void setSolid(int tile, boolean newSolid)
+	{
+		solid[tile] = newSolid;
+	}
+
+	/**
+	 * Get the tile under a point
+	 * @param pointX The x position of the point in pixels
+	 * @param pointY The y position of the point in pixels
+	 * @return Index into the tileset or EMPTY
+	 */
+	public int getTileAt(int pointX, int pointY)
+	{
+		return getTile(Math.floorDiv(pointX - x, tileWidth), Math.floorDiv(pointY - y, tileHeight));
+	}
+
+	/**
+	 * Determine if a point is over a solid tile
+	 * @param pointX The x position of the point in pixels
+	 * @param pointY The y position of the point in pixels
+	 * @return true if the tile under the point is solid
+	 */
+	public boolean isSolidAt(int pointX, int pointY)
+	{
+		int tile = getTileAt(pointX, pointY);
+		return tile != EMPTY && solid[tile];
+	}
+
+	/**
+	 * Determine if an area overlaps any solid tile
+	 * @param areaX The x position of the area's left edge
+	 * @param areaY The y position of the area's top edge
+	 * @param areaWidth The width of the area
+	 * @param areaHeight The height of the area
+	 * @return true if any tile under the area is solid
+	 */
+	public boolean overlapsSolid(int areaX, int areaY, int areaWidth, int areaHeight)
+	{
+		int firstColumn = Math.max(0, Math.floorDiv(areaX - x, tileWidth));
+		int firstRow = Math.max(0, Math.floorDiv(areaY - y, tileHeight));
+		int lastColumn = Math.min(columns - 1, Math.floorDiv(areaX + areaWidth - 1 - x, tileWidth));
+		int lastRow = Math.min(rows - 1, Math.floorDiv(areaY + areaHeight - 1 - y, tileHeight));
+		int tile;
+
+		for(int row = firstRow; row <= lastRow; row++)
+		{
+			for(int column = firstColumn; column <= lastColumn; column++)
+			{
+				tile = tiles[row * columns + column];
+				if(tile != EMPTY && solid[tile])
+					return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Determine if an entity overlaps any solid tile
+	 * @param target The entity to test
+	 * @return true if any tile under the entity's bounds is solid
+	 */
+	public boolean overlapsSolid(PhineasBoundable target)
+	{
+		return overlapsSolid(target.getX(), target.getY(), target.getWidth(), target.getHeight());
+	}
+
+	/**
+	 * Limit drawing to the chunks inside an area, for when the graphics are not
+	 * clipped to the screen
+	 * @param newViewport The visible area or null to use the graphics clip (the
+	 *                    game window's graphics are clipped to the window; with
+	 *                    no clip and no viewport every chunk is drawn)
+	 */
+	public void setViewport(Rectangle newViewport)
+	{
+		viewport = newViewport == null ? null : new Rectangle(newViewport);
+	}
+
+	/**
+	 * Throw away every pre-rendered chunk, like after the tileset images change
+	 */
+	public void invalidate()
+	{
+		Arrays.fill(dirtyChunks, true);
+	}
+
+	@Override
+	public void draw(Graphics2D target)
+	{
+		Rectangle visible = viewport != null ? viewport : target.getClipBounds();
+		int chunkWidth = chunkTiles * tileWidth;
+		int chunkHeight = chunkTiles * tileHeight;
+		int firstColumn = 0;
+		int firstRow = 0;
+		int lastColumn = chunkColumns - 1;
+		int lastRow = chunkRows - 1;
+		int index;
+
+		if(visible != null)
+		{
+			firstColumn = Math.max(firstColumn, Math.floorDiv(visible.x - x, chunkWidth));
+			firstRow = Math.max(firstRow, Math.floorDiv(visible.y - y, chunkHeight));
+			lastColumn = Math.min(lastColumn, Math.floorDiv(visible.x + visible.width - 1 - x, chunkWidth));
+			lastRow = Math.min(lastRow, Math.floorDiv(visible.y + visible.height - 1 - y, chunkHeight));
+		}
+
+		for(int row = firstRow; row <= lastRow; row++)
+		{
+			for(int column = firstColumn; column <= lastColumn; column++)
+			{
+				index = row * chunkColumns + column;
+				if(chunks[index] == null || dirtyChunks[index])
+					rasterize(column, row);
+				target.drawImage(chunks[index], x + column * chunkWidth, y + row * chunkHeight, null);
+			}
+		}
+	}
+
+	/**
+	 * Render one chunk's tiles into its cached image
+	 */
+	private void rasterize(int chunkColumn, int chunkRow)
+	{
+		int index = chunkRow * chunkColumns + chunkColumn;
+		int firstColumn = chunkColumn * chunkTiles;
+		int firstRow = chunkRow * chunkTiles;
+		int lastColumn = Math.min(columns, firstColumn + chunkTiles);
+		int lastRow = Math.min(rows, firstRow + chunkTiles);
+		BufferedImage chunk = chunks[index];
+		Graphics2D graphics;
+		int tile;
+
+		if(chunk == null)
+		{
+			chunk = PhineasImageUtil.createCompatibleImage(chunkTiles * tileWidth, chunkTiles * tileHeight,
+					Transparency.TRANSLUCENT);
+			chunks[index] = chunk;
+		}
+
+		graphics = chunk.createGraphics();
+		graphics.setComposite(AlphaComposite.Clear);
+		graphics.fillRect(0, 0, chunk.getWidth(), chunk.getHeight());
+		graphics.setComposite(AlphaComposite.SrcOver);
+
+		for(int row = firstRow; row < lastRow; row++)
+		{
+			for(int column = firstColumn; column < lastColumn; column++)
+			{
+				tile = tiles[row * columns + column];
+				if(tile != EMPTY)
+				{
+					tileset[tile].draw(graphics, (column - firstColumn) * tileWidth,
+							(row - firstRow) * tileHeight);
+				}
+			}
+		}
+
+		graphics.dispose();
+		dirtyChunks[index] = false;
+	}
+
+	@Override
+	public int getDepth()
+	{
+		return depth;
+	}
+
+	@Override
+	public int getX()
+	{
+		return x;
+	}
+
+	@Override
+	public int getY()
+	{
+		return y;
+	}
+
+	@Override
+	public int getWidth()
+	{
+		return columns * tileWidth;
+	}
+
+	@Override
+	public int getHeight()
+	{
+		return rows * tileHeight;
+	}
+
+	/**
+	 * Get the number of tiles across
+	 * @return Number of columns
+	 */
+	public int getColumns()
+	{
+		return columns;
+	}
+
+	/**
+	 * Get the number of tiles down
+	 * @return Number of rows
+	 */
+	public int getRows()
+	{
+		return rows;
+	}
+}
@@ -95,6 +95,9 @@ class GameCanvas extends Canvas
 		catch (IllegalStateException e)
 		{return null;}
 		
+		// Clip to the canvas so entities can tell what is on screen
+		graphics.setClip(0, 0, width, height);
+		
 		// Clear screen if requested
 		if(clearScreen)
 		{
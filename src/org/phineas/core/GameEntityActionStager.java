@@ -1,5 +1,9 @@
 package org.phineas.core;
 
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
 import java.util.concurrent.ConcurrentLinkedQueue;
 
 /**
@@ -13,6 +17,39 @@ class GameEntityActionStager
 	
 	private ConcurrentLinkedQueue<Object> deleteQueue = new ConcurrentLinkedQueue<Object>();
 	private ConcurrentLinkedQueue<Object> addQueue = new ConcurrentLinkedQueue<Object>();
+	private ConcurrentLinkedQueue<ActivationChange> activationQueue = new ConcurrentLinkedQueue<ActivationChange>();
+	private ConcurrentLinkedQueue<Replacement> replacementQueue = new ConcurrentLinkedQueue<Replacement>();
+	
+	/**
+	 * Staged request to wake up or put to sleep a pooled entity
+	 */
+	private static class ActivationChange
+	{
+		private final PhineasPoolable target;
+		private final boolean active;
+		
+		public ActivationChange(PhineasPoolable newTarget, boolean newActive)
+		{
+			target = newTarget;
+			active = newActive;
+		}
+	}
+	
+	/**
+	 * Staged request to swap every entity of some classes for a new set, like
+	 * when restoring a snapshot
+	 */
+	private static class Replacement
+	{
+		private final Set<Class<?>> replacedClasses;
+		private final List<Object> incoming;
+		
+		public Replacement(Set<Class<?>> newReplacedClasses, List<Object> newIncoming)
+		{
+			replacedClasses = newReplacedClasses;
+			incoming = newIncoming;
+		}
+	}
 	
 	/**
 	 * Get access to a common instance of GameEntityAdder
@@ -45,22 +82,91 @@ class GameEntityActionStager
 		addQueue.add(targetEntity);
 	}
 	
+	/**
+	 * Wakes up an already added pooled entity on the completeAllStagedActions
+	 * function, without adding it again
+	 * @param targetEntity The entity to wake up
+	 */
+	public void activateEntity(PhineasPoolable targetEntity)
+	{
+		activationQueue.add(new ActivationChange(targetEntity, true));
+	}
+	
+	/**
+	 * Puts a pooled entity to sleep on the completeAllStagedActions function,
+	 * leaving it in the game's registries for later reuse
+	 * @param targetEntity The entity to put to sleep
+	 */
+	public void deactivateEntity(PhineasPoolable targetEntity)
+	{
+		activationQueue.add(new ActivationChange(targetEntity, false));
+	}
+	
+	/**
+	 * Replaces every entity of the given exact classes with the given
+	 * entities on the completeAllStagedActions function, removing the old ones
+	 * in bulk before any other staged action
+	 * @param replacedClasses The classes of entity to remove
+	 * @param incoming The entities to add in their place
+	 */
+	public void replaceEntities(Set<Class<?>> replacedClasses, List<Object> incoming)
+	{
+		replacementQueue.add(new Replacement(replacedClasses, incoming));
+	}
+	
 	/**
 	 * Remove all objects that have been staged to be deleted
 	 */
 	public void completeAllStagedActions(GameModelManager targetManager)
 	{
+		GameStagingEvent event = new GameStagingEvent();
+		int removed = 0;
+		int added = 0;
+		
+		event.begin();
 		targetManager.lockIterators();
 		
+		while(!replacementQueue.isEmpty())
+		{
+			Replacement replacement = replacementQueue.remove();
+			Set<Object> replaced = Collections.newSetFromMap(new IdentityHashMap<Object, Boolean>());
+			targetManager.removeEntitiesOfClasses(replacement.replacedClasses, replaced);
+			removed += replaced.size();
+			for(Object entity : replacement.incoming)
+				actuallyAddEntity(targetManager, entity);
+			added += replacement.incoming.size();
+		}
 		while(!deleteQueue.isEmpty())
+		{
 			actuallyRemoveEntity(targetManager, deleteQueue.remove());
+			removed++;
+		}
 		while(!addQueue.isEmpty())
+		{
 			actuallyAddEntity(targetManager, addQueue.remove());
+			added++;
+		}
+		while(!activationQueue.isEmpty())
+		{
+			ActivationChange change = activationQueue.remove();
+			setActive(change.target, change.active);
+		}
 		
 		targetManager.unlockIterators();
+		
+		if(added + removed > 0 && event.shouldCommit())
+		{
+			event.added = added;
+			event.removed = removed;
+			event.commit();
+		}
 	}
 	
-	private GameEntityActionStager()
+	/**
+	 * Creates a new stager with nothing staged, like for a PhineasWorld other
+	 * than the default one
+	 */
+	GameEntityActionStager()
 	{}
 	
 	/**
@@ -109,6 +215,21 @@ class GameEntityActionStager
 			targetFacade.attachMouseScrollListener((PhineasScrollWheelListener)targetEntity);
 	}
 	
+	/**
+	 * Wakes up or puts to sleep a pooled entity and any pooled components it has
+	 * @param targetEntity The entity to change
+	 * @param active If true, the entity is woken up
+	 */
+	private void setActive(Object targetEntity, boolean active)
+	{
+		if(PhineasCompoundGameObject.class.isInstance(targetEntity))
+			for(Object o : ((PhineasCompoundGameObject)targetEntity).getComponents())
+				setActive(o, active);
+		
+		if(targetEntity instanceof PhineasPoolable)
+			((PhineasPoolable)targetEntity).setActive(active);
+	}
+	
 	/**
 	 * Removes the given entity to the given game facade in all the ways it possibly can
 	 * given the interfaces the entity implements
@@ -0,0 +1,25 @@
+package org.phineas.core;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * Flight Recorder event covering the work done in one iteration of the game loop
+ * @author Sam Pottinger
+ */
+@Name("org.phineas.Frame")
+@Label("Frame")
+@Category("Phineas")
+@Description("One iteration of the game loop, excluding the sleep after it")
+class GameFrameEvent extends jdk.jfr.Event
+{
+	@Label("Frame Number")
+	long frame;
+	
+	@Label("Step Delta")
+	@Timespan(Timespan.MILLISECONDS)
+	long deltaMillis;
+}
@@ -1,5 +1,7 @@
 package org.phineas.core;
 
+import java.util.concurrent.TimeUnit;
+
 /**
  * Singleton manager that simplifies the game loop for Phineas projects
  * @author Sam Pottinger
@@ -9,7 +11,7 @@ class GameLoopManager
 	private static final int DEFAULT_FPS = 40;
 	private static final float MILLISECONDS_PER_SECOND = 1000;
 	
-	private boolean loopRunning;
+	private volatile boolean loopRunning;
 	private boolean loopShouldBeRunning;
 	private long lastLoopTime;
 	private long targetFPS;
@@ -62,6 +64,15 @@ class GameLoopManager
 		return true;
 	}
 	
+	/**
+	 * Determine if the game loop thread is running
+	 * @return true if the loop was started and has not yet ended
+	 */
+	public boolean isRunning()
+	{
+		return loopRunning;
+	}
+	
 	/**
 	 * Stops the game loop thread and waits to return until it actually stops.
 	 * If it is not running, this does nothing.
@@ -98,22 +109,74 @@ class GameLoopManager
 	{
 		long delta;
 		long sleepTime;
+		long frameStart;
+		long sleepStart;
+		long budgetMillis;
+		long workMillis;
+		long frame = 0;
+		PhineasFrameProfiler profiler = PhineasFrameProfiler.getInstance();
+		GameFrameEvent frameEvent;
+		GameSleepEvent sleepEvent;
+		GameOverrunEvent overrunEvent;
 		
 		while(loopShouldBeRunning)
 		{
 			// Figure out how long its been since we have been here
 			delta = System.currentTimeMillis() - lastLoopTime;
 			lastLoopTime = System.currentTimeMillis();
+			frame++;
 			
 			// Let the listener know
+			frameEvent = new GameFrameEvent();
+			frameEvent.begin();
+			frameStart = System.nanoTime();
 			stepListener.onStep(delta);
+			sleepStart = System.nanoTime();
+			if(frameEvent.shouldCommit())
+			{
+				frameEvent.frame = frame;
+				frameEvent.deltaMillis = delta;
+				frameEvent.commit();
+			}
+			
+			// Report frames whose own work blew the budget (delta also counts the
+			// previous sleep, so it would flag cheap frames too)
+			budgetMillis = (long)(MILLISECONDS_PER_SECOND / targetFPS);
+			workMillis = TimeUnit.NANOSECONDS.toMillis(sleepStart - frameStart);
+			if(workMillis > budgetMillis)
+			{
+				overrunEvent = new GameOverrunEvent();
+				if(overrunEvent.shouldCommit())
+				{
+					overrunEvent.frame = frame;
+					overrunEvent.budgetMillis = budgetMillis;
+					overrunEvent.overMillis = workMillis - budgetMillis;
+					overrunEvent.commit();
+				}
+			}
 			
 			// Aim for FPS
 			sleepTime = (long)(MILLISECONDS_PER_SECOND / targetFPS - delta);
 			if(sleepTime > 0)
+			{
+				sleepEvent = new GameSleepEvent();
+				sleepEvent.begin();
 				try { 
 					Thread.sleep(sleepTime); 
 				} catch (Exception e) {}
+				if(sleepEvent.shouldCommit())
+				{
+					sleepEvent.frame = frame;
+					sleepEvent.requestedMillis = sleepTime;
+					sleepEvent.commit();
+				}
+			}
+			
+			if(profiler.isEnabled())
+			{
+				profiler.record(PhineasFrameProfiler.Phase.FRAME, sleepStart - frameStart);
+				profiler.record(PhineasFrameProfiler.Phase.SLEEP, System.nanoTime() - sleepStart);
+			}
 		}
 		loopRunning = false;
 	}
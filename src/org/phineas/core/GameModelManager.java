@@ -4,6 +4,8 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
 import java.util.TreeSet;
 import java.util.concurrent.Semaphore;
 
@@ -17,6 +19,7 @@ class GameModelManager
 	
 	private Collection<DepthComparedDrawableDecorator> drawables;
 	private Collection<PhineasStepListener> stepListeners;
+	private Collection<PhineasStepListener> concurrentStepListeners;
 	private Collection<PhineasKeyListener> keyListeners;
 	private Collection<PhineasHoverListenerNanny> hoverListeners;
 	private Collection<PhineasClickListener> clickListeners;
@@ -40,12 +43,14 @@ class GameModelManager
 	}
 	
 	/**
-	 * Private constructor for this singleton
+	 * Creates a new empty model, like for a PhineasWorld other than the
+	 * default one
 	 */
-	private GameModelManager()
+	GameModelManager()
 	{
 		drawables = Collections.synchronizedSortedSet(new TreeSet<DepthComparedDrawableDecorator>());
 		stepListeners = Collections.synchronizedList(new ArrayList<PhineasStepListener>());
+		concurrentStepListeners = Collections.synchronizedList(new ArrayList<PhineasStepListener>());
 		keyListeners = Collections.synchronizedList(new ArrayList<PhineasKeyListener>());
 		hoverListeners = Collections.synchronizedList(new ArrayList<PhineasHoverListenerNanny>());
 		clickListeners = Collections.synchronizedList(new ArrayList<PhineasClickListener>());
@@ -54,6 +59,17 @@ class GameModelManager
 		mouseScrollListeners = Collections.synchronizedList(new ArrayList<PhineasScrollWheelListener>());
 	}
 	
+	/**
+	 * Determine if an entity is pooled and currently asleep, in which case it
+	 * should not be drawn, stepped or sent input
+	 * @param entity The entity to check
+	 * @return true if the entity is a dormant PhineasPoolable
+	 */
+	public static boolean isDormant(Object entity)
+	{
+		return entity instanceof PhineasPoolable && !((PhineasPoolable)entity).isActive();
+	}
+	
 	/**
 	 * Prevent any iterators from going to client code
 	 */
@@ -80,6 +96,22 @@ class GameModelManager
 		iteratorSemaphore.release();
 	}
 
+	/**
+	 * Remove every entity and listener from this game at once
+	 */
+	public void clear()
+	{
+		drawables.clear();
+		stepListeners.clear();
+		concurrentStepListeners.clear();
+		keyListeners.clear();
+		hoverListeners.clear();
+		clickListeners.clear();
+		globalClickListeners.clear();
+		globalMouseMovementListeners.clear();
+		mouseScrollListeners.clear();
+	}
+
 	/**
 	 * Adds a new drawable entity to this game
 	 * @param drawable The entity to add to this game
@@ -165,7 +197,10 @@ class GameModelManager
 	 */
 	public void attachStepListener(PhineasStepListener newListener)
 	{
-		stepListeners.add(newListener);
+		if(newListener instanceof PhineasConcurrentStepListener)
+			concurrentStepListeners.add(newListener);
+		else
+			stepListeners.add(newListener);
 	}
 	
 	/**
@@ -176,13 +211,17 @@ class GameModelManager
 	 */
 	public void detachStepListener(PhineasStepListener targetListener)
 	{
-		stepListeners.remove(targetListener);
+		if(targetListener instanceof PhineasConcurrentStepListener)
+			concurrentStepListeners.remove(targetListener);
+		else
+			stepListeners.remove(targetListener);
 	}
 
 	/**
-	 * Get all of the step listeners that have registered with this game
+	 * Get all of the step listeners that have registered with this game and
+	 * must be called one at a time
 	 * @return Iterable over the objects that have subscribed to this game's
-	 *         step event
+	 *         step event (excluding concurrent step listeners)
 	 */
 	public Iterable<PhineasStepListener> getStepListeners()
 	{
@@ -190,6 +229,17 @@ class GameModelManager
 		return stepListeners;
 	}
 	
+	/**
+	 * Copy the step listeners that can run concurrently into an array
+	 * @param target Array to reuse if it is big enough
+	 * @return Array holding the listeners, followed by null if there is room
+	 */
+	public PhineasStepListener[] getConcurrentStepListeners(PhineasStepListener[] target)
+	{
+		waitForUnlockedIterators();
+		return concurrentStepListeners.toArray(target);
+	}
+	
 	/**
 	 * Adds a new PhineasKeyListener to this game
 	 * @param newListener The listener to add to this game
@@ -424,4 +474,159 @@ class GameModelManager
 		waitForUnlockedIterators();
 		return mouseScrollListeners;
 	}
+
+	/**
+	 * Get the number of drawables this game is managing
+	 * @return Number of registered drawables
+	 */
+	public int getDrawableCount()
+	{
+		return drawables.size();
+	}
+	
+	/**
+	 * Get the number of step listeners this game is managing
+	 * @return Number of registered step listeners
+	 */
+	public int getStepListenerCount()
+	{
+		return stepListeners.size() + concurrentStepListeners.size();
+	}
+	
+	/**
+	 * Get the number of key listeners this game is managing
+	 * @return Number of registered key listeners
+	 */
+	public int getKeyListenerCount()
+	{
+		return keyListeners.size();
+	}
+	
+	/**
+	 * Get the number of hover listeners this game is managing
+	 * @return Number of registered hover listeners
+	 */
+	public int getHoverListenerCount()
+	{
+		return hoverListeners.size();
+	}
+	
+	/**
+	 * Get the number of click listeners this game is managing
+	 * @return Number of registered click listeners
+	 */
+	public int getClickListenerCount()
+	{
+		return clickListeners.size();
+	}
+	
+	/**
+	 * Get the number of global click listeners this game is managing
+	 * @return Number of registered global click listeners
+	 */
+	public int getGlobalClickListenerCount()
+	{
+		return globalClickListeners.size();
+	}
+	
+	/**
+	 * Get the number of global mouse movement listeners this game is managing
+	 * @return Number of registered global mouse movement listeners
+	 */
+	public int getGlobalMouseMovementListenerCount()
+	{
+		return globalMouseMovementListeners.size();
+	}
+	
+	/**
+	 * Get the number of mouse scroll listeners this game is managing
+	 * @return Number of registered mouse scroll listeners
+	 */
+	public int getMouseScrollListenerCount()
+	{
+		return mouseScrollListeners.size();
+	}
+	
+	/**
+	 * Collect every distinct entity in this game's registries, unwrapped from
+	 * any decorators, in drawing order followed by listeners
+	 * @param target List to add the entities to
+	 * @param seen Identity set of entities already in the list
+	 */
+	public void collectEntities(List<Object> target, Set<Object> seen)
+	{
+		collectFrom(drawables, target, seen);
+		collectFrom(stepListeners, target, seen);
+		collectFrom(concurrentStepListeners, target, seen);
+		collectFrom(keyListeners, target, seen);
+		collectFrom(hoverListeners, target, seen);
+		collectFrom(clickListeners, target, seen);
+		collectFrom(globalClickListeners, target, seen);
+		collectFrom(globalMouseMovementListeners, target, seen);
+		collectFrom(mouseScrollListeners, target, seen);
+	}
+	
+	/**
+	 * Take every entity of the given exact classes out of all registries in
+	 * one pass over each, rather than searching for them one at a time
+	 * @param classes The classes of entity to remove (subclasses are kept)
+	 * @param removed Identity set to add the removed entities to
+	 */
+	public void removeEntitiesOfClasses(Set<Class<?>> classes, Set<Object> removed)
+	{
+		removeFrom(drawables, classes, removed);
+		removeFrom(stepListeners, classes, removed);
+		removeFrom(concurrentStepListeners, classes, removed);
+		removeFrom(keyListeners, classes, removed);
+		removeFrom(hoverListeners, classes, removed);
+		removeFrom(clickListeners, classes, removed);
+		removeFrom(globalClickListeners, classes, removed);
+		removeFrom(globalMouseMovementListeners, classes, removed);
+		removeFrom(mouseScrollListeners, classes, removed);
+	}
+	
+	private static void collectFrom(Collection<?> registry, List<Object> target, Set<Object> seen)
+	{
+		Object entity;
+		synchronized(registry)
+		{
+			for(Object entry : registry)
+			{
+				entity = unwrap(entry);
+				if(seen.add(entity))
+					target.add(entity);
+			}
+		}
+	}
+	
+	private static void removeFrom(Collection<?> registry, Set<Class<?>> classes, Set<Object> removed)
+	{
+		Iterator<?> itr;
+		Object entity;
+		synchronized(registry)
+		{
+			itr = registry.iterator();
+			while(itr.hasNext())
+			{
+				entity = unwrap(itr.next());
+				if(classes.contains(entity.getClass()))
+				{
+					itr.remove();
+					removed.add(entity);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Get the entity the game was given from a registry entry
+	 */
+	private static Object unwrap(Object entry)
+	{
+		if(entry instanceof DepthComparedDrawableDecorator)
+			return ((DepthComparedDrawableDecorator)entry).getInnerDrawable();
+		if(entry instanceof PhineasHoverListenerNanny)
+			return ((PhineasHoverListenerNanny)entry).getInnerListener();
+		return entry;
+	}
 }
@@ -0,0 +1,29 @@
+package org.phineas.core;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * Flight Recorder event marking a frame that took longer than the target FPS allows
+ * @author Sam Pottinger
+ */
+@Name("org.phineas.Overrun")
+@Label("Frame Overrun")
+@Category("Phineas")
+@Description("A frame whose update and drawing alone took longer than its budget")
+class GameOverrunEvent extends jdk.jfr.Event
+{
+	@Label("Frame Number")
+	long frame;
+	
+	@Label("Frame Budget")
+	@Timespan(Timespan.MILLISECONDS)
+	long budgetMillis;
+	
+	@Label("Time Over Budget")
+	@Timespan(Timespan.MILLISECONDS)
+	long overMillis;
+}
@@ -10,6 +10,7 @@ import java.awt.event.MouseWheelEvent;
 import java.awt.event.MouseWheelListener;
 import java.awt.event.WindowEvent;
 import java.awt.event.WindowListener;
+import java.util.ArrayDeque;
 
 /**
  * Controller / presenter for GameLoopManager that simplifies game loop management and the step event
@@ -21,10 +22,32 @@ MouseMotionListener, MouseWheelListener
 	private static GamePresenter instance = null;
 	
 	private GameLoopManager loopManager;
-	private GameView gameView;
+	private volatile GameView gameView;
+	private GameRenderer renderer;
+	private volatile PhineasWorld world;
+	private volatile PhineasInputRecorder recorder;
+	private ArrayDeque<PendingInput> inputQueue;
+	private ArrayDeque<PendingInput> dispatchQueue;
 	
+	/**
+	 * Input event waiting for the game loop to dispatch it
+	 */
+	private static class PendingInput
+	{
+		private final byte type;
+		private final KeyEvent keyEvent;
+		private final int x;
+		private final int y;
+		
+		public PendingInput(byte newType, KeyEvent newKeyEvent, int newX, int newY)
+		{
+			type = newType;
+			keyEvent = newKeyEvent;
+			x = newX;
+			y = newY;
+		}
+	}
 	
-
 	/**
 	 * Gets a shared instance of GamePresenter
 	 * @return Shared instance of this singleton
@@ -41,7 +64,10 @@ MouseMotionListener, MouseWheelListener
 	private GamePresenter()
 	{
 		loopManager = new GameLoopManager();
-		gameView = new GameView(this, this, this, this, this);
+		renderer = new GameRenderer();
+		world = PhineasWorld.getDefault();
+		inputQueue = new ArrayDeque<PendingInput>();
+		dispatchQueue = new ArrayDeque<PendingInput>();
 	}
 
 	/**
@@ -49,6 +75,7 @@ MouseMotionListener, MouseWheelListener
 	 */
 	public void startMainLoop() 
 	{
+		getGameView();
 		loopManager.startLoop(this);
 	}
 
@@ -67,25 +94,55 @@ MouseMotionListener, MouseWheelListener
 	 */
 	public void setDimensions(int newWidth, int newHeight)
 	{
-		gameView.setDimensions(newWidth, newHeight);
+		getGameView().setDimensions(newWidth, newHeight);
 	}
 	
 	/**
-	 * Checks the given hover listener to see if it is under the given
-	 * mouse coordinates
-	 * @param listener
-	 * @param mouseX
-	 * @param mouseY
+	 * Get how much game time has passed
+	 * @return Sum of all step deltas the shown world has seen in milliseconds
+	 *         (does not advance while the main loop is stopped)
 	 */
-	private void checkForHover(PhineasHoverListenerNanny listener, int mouseX,
-			int mouseY)
+	public long getGameTime()
 	{
-		BoundableHelper helper = BoundableHelper.getInstance();
-		
-		if(helper.isInBounds(listener, mouseX, mouseY))
-			listener.reportMouseIn();
-		else
-			listener.reportMouseOut();
+		return world.getGameTime();
+	}
+	
+	/**
+	 * Get the world being stepped, drawn and sent input
+	 * @return The shown world
+	 */
+	public PhineasWorld getWorld()
+	{
+		return world;
+	}
+	
+	/**
+	 * Switch which world is stepped, drawn and sent input, starting with the
+	 * next step. The previous world keeps its state but stops advancing.
+	 * @param newWorld The world to show
+	 */
+	public void setWorld(PhineasWorld newWorld)
+	{
+		world = newWorld;
+	}
+	
+	/**
+	 * Start or stop logging input and step deltas for replay
+	 * @param newRecorder The recorder to log to or null to stop recording
+	 *                    (the old recorder is not closed)
+	 */
+	public void setRecorder(PhineasInputRecorder newRecorder)
+	{
+		recorder = newRecorder;
+	}
+	
+	/**
+	 * Get the recorder input is being logged to
+	 * @return The current recorder or null if not recording
+	 */
+	public PhineasInputRecorder getRecorder()
+	{
+		return recorder;
 	}
 
 	@Override
@@ -94,50 +151,171 @@ MouseMotionListener, MouseWheelListener
 		Graphics2D graphics = null;
 		Iterable<PhineasDrawable> drawables;
 		
-		GameModelManager gameModelManager = GameModelManager.getInstance();
+		PhineasWorld currentWorld = world;
+		PhineasFrameProfiler profiler = PhineasFrameProfiler.getInstance();
+		boolean profiling = profiler.isEnabled();
+		long phaseStart;
+		long now;
 		
-		GameEntityActionStager.getInstance().completeAllStagedActions(gameModelManager);
+		// Input is dispatched here rather than on the AWT thread so listeners
+		// never see it mid-step and a replay sees it in the same place
+		PhineasInputRecorder currentRecorder = recorder;
+		dispatchQueuedInput(currentWorld, currentRecorder);
 		
-		// Update those that are listening for the step event
-		for(PhineasStepListener listener : gameModelManager.getStepListeners())
-			listener.onStep(milliseconds);
+		// Apply staged actions and update the step listeners
+		if(currentRecorder != null)
+			currentRecorder.recordTick(milliseconds);
+		currentWorld.update(milliseconds, profiling ? profiler : null);
+		phaseStart = profiling ? System.nanoTime() : 0;
 		
 		// Safely check out graphics
-		graphics = gameView.checkoutGraphics();
+		graphics = getGameView().checkoutGraphics();
 		if (graphics == null) return;
 		
-		// Draw entities
-		drawables = gameModelManager.getDrawables();
-		for(PhineasDrawable drawable : drawables)
-			drawable.draw(graphics);
+		// Draw entities with the world current so they read its clock
+		drawables = currentWorld.getModelManager().getDrawables();
+		PhineasWorld previous = PhineasWorld.enter(currentWorld);
+		try
+		{
+			renderer.draw(drawables, graphics);
+		}
+		finally
+		{
+			PhineasWorld.exit(previous);
+		}
+		if(profiling)
+		{
+			now = System.nanoTime();
+			profiler.record(PhineasFrameProfiler.Phase.DRAW, now - phaseStart);
+			phaseStart = now;
+		}
 		
 		// Check graphics back in
-		gameView.checkinGraphics(graphics);
+		getGameView().checkinGraphics(graphics);
+		if(profiling)
+			profiler.record(PhineasFrameProfiler.Phase.SHOW, System.nanoTime() - phaseStart);
+	}
+
+	/**
+	 * Log and dispatch every input event that arrived since the last step
+	 * @param target The world to send the events to
+	 * @param currentRecorder The recorder to log them to or null
+	 */
+	private void dispatchQueuedInput(PhineasWorld target, PhineasInputRecorder currentRecorder)
+	{
+		PendingInput input;
+		
+		synchronized(inputQueue)
+		{
+			dispatchQueue.addAll(inputQueue);
+			inputQueue.clear();
+		}
+		
+		while((input = dispatchQueue.poll()) != null)
+			dispatchInput(input, target, currentRecorder);
+	}
+	
+	/**
+	 * Log and dispatch a single input event
+	 * @param input The event to send
+	 * @param target The world to send the event to
+	 * @param currentRecorder The recorder to log it to or null
+	 */
+	private void dispatchInput(PendingInput input, PhineasWorld target, PhineasInputRecorder currentRecorder)
+	{
+		switch(input.type)
+		{
+		case PhineasInputRecorder.KEY_PRESSED:
+			if(currentRecorder != null)
+				currentRecorder.recordKey(input.type, input.keyEvent);
+			target.keyPressed(input.keyEvent);
+			break;
+		case PhineasInputRecorder.KEY_RELEASED:
+			if(currentRecorder != null)
+				currentRecorder.recordKey(input.type, input.keyEvent);
+			target.keyReleased(input.keyEvent);
+			break;
+		case PhineasInputRecorder.LEFT_DOWN:
+			if(currentRecorder != null)
+				currentRecorder.recordMouse(input.type, input.x, input.y);
+			target.leftDown(input.x, input.y);
+			break;
+		case PhineasInputRecorder.LEFT_RELEASE:
+			if(currentRecorder != null)
+				currentRecorder.recordMouse(input.type, input.x, input.y);
+			target.leftRelease(input.x, input.y);
+			break;
+		case PhineasInputRecorder.MOUSE_MOVED:
+			if(currentRecorder != null)
+				currentRecorder.recordMouse(input.type, input.x, input.y);
+			target.mouseMoved(input.x, input.y);
+			break;
+		case PhineasInputRecorder.WHEEL_MOVED:
+			if(currentRecorder != null)
+				currentRecorder.recordWheel(input.x);
+			target.mouseWheelMoved(input.x);
+			break;
+		}
+	}
+	
+	/**
+	 * Hand an input event to the game loop, dispatching it right away if no
+	 * loop is running to drain the queue
+	 * @param input The event to send
+	 */
+	private void queueInput(PendingInput input)
+	{
+		if(!loopManager.isRunning())
+		{
+			dispatchInput(input, world, recorder);
+			return;
+		}
+		
+		synchronized(inputQueue)
+		{
+			// Only the latest position matters until the next step
+			if(input.type == PhineasInputRecorder.MOUSE_MOVED && !inputQueue.isEmpty()
+					&& inputQueue.peekLast().type == PhineasInputRecorder.MOUSE_MOVED)
+				inputQueue.pollLast();
+			inputQueue.add(input);
+		}
 	}
 
 	@Override
 	public void keyPressed(KeyEvent e)
 	{
-		for(PhineasKeyListener listener : GameModelManager.getInstance().getKeyListeners())
-			listener.keyPressed(e);
+		queueInput(new PendingInput(PhineasInputRecorder.KEY_PRESSED, e, 0, 0));
 	}
 
 	@Override
 	public void keyReleased(KeyEvent e) 
 	{
-		for(PhineasKeyListener listener : GameModelManager.getInstance().getKeyListeners())
-			listener.keyReleased(e);
+		queueInput(new PendingInput(PhineasInputRecorder.KEY_RELEASED, e, 0, 0));
 	}
 
 	
 	public void showWindow()
 	{
-		gameView.show();
+		getGameView().show();
 	}
 
 	public void hideWindow()
 	{
-		gameView.hide();
+		GameView view = gameView;
+		if(view != null)
+			view.hide();
+	}
+	
+	/**
+	 * Get the game window, creating it the first time it is needed so worlds
+	 * can be stepped (and the facade used) without a display
+	 * @return The game window
+	 */
+	private synchronized GameView getGameView()
+	{
+		if(gameView == null)
+			gameView = new GameView(this, this, this, this, this);
+		return gameView;
 	}
 
 	@Override
@@ -190,50 +368,19 @@ MouseMotionListener, MouseWheelListener
 	@Override
 	public  void mousePressed(MouseEvent e)
 	{	
-		BoundableHelper helper = BoundableHelper.getInstance();
-		
 		// Respond to left click
 		if(e.getButton() == MouseEvent.BUTTON1)
 		{
-			int mouseX = e.getX();
-			int mouseY = e.getY();
-			
-			// Respond to global listeners
-			for(PhineasGlobalClickListener listener : GameModelManager.getInstance().getGlobalClickListeners())
-				listener.onGlobalLeftDown(mouseX, mouseY);
-			
-			// Respond to object only listeners
-			for(PhineasClickListener listener : GameModelManager.getInstance().getClickListeners())
-			{
-				if(helper.isInBounds(listener, mouseX, mouseY))
-					listener.onLeftDown(mouseX - listener.getX(), mouseY - listener.getY());
-			}
+			queueInput(new PendingInput(PhineasInputRecorder.LEFT_DOWN, null, e.getX(), e.getY()));
 		}
 	}
 
 	@Override
 	public void mouseReleased(MouseEvent e)
 	{
-		int mouseX;
-		int mouseY;
-		BoundableHelper helper;
-		
-		helper = BoundableHelper.getInstance();
-		mouseX = e.getX();
-		mouseY = e.getY();
-		
 		if(e.getButton() == MouseEvent.BUTTON1)
 		{
-			// Respond to global listeners
-			for(PhineasGlobalClickListener listener : GameModelManager.getInstance().getGlobalClickListeners())
-				listener.onGlobalLeftRelease(mouseX, mouseY);
-			
-			// Respond to object only listeners
-			for(PhineasClickListener listener : GameModelManager.getInstance().getClickListeners())
-			{
-				if(helper.isInBounds(listener, mouseX, mouseY))
-					listener.onLeftRelease(mouseX - listener.getX(), e.getY() - listener.getY());
-			}
+			queueInput(new PendingInput(PhineasInputRecorder.LEFT_RELEASE, null, e.getX(), e.getY()));
 		}
 	}
 
@@ -246,20 +393,7 @@ MouseMotionListener, MouseWheelListener
 	@Override
 	public void mouseMoved(MouseEvent e)
 	{
-		int mouseX;
-		int mouseY;
-		
-		// Get position
-		mouseX = e.getX();
-		mouseY = e.getY();
-		
-		// Respond to global listeners
-		for(PhineasGlobalMouseMovementListener listener : GameModelManager.getInstance().getGlobalMouseMovementListeners())
-			listener.onMouseMove(mouseX, mouseY);
-		
-		// Check for hovering
-		for(PhineasHoverListenerNanny listener : GameModelManager.getInstance().getDecoratedHoverListeners())
-			checkForHover(listener, mouseX, mouseY);
+		queueInput(new PendingInput(PhineasInputRecorder.MOUSE_MOVED, null, e.getX(), e.getY()));
 	}
 	
 	/**
@@ -274,8 +408,8 @@ MouseMotionListener, MouseWheelListener
 	@Override
 	public void mouseWheelMoved(MouseWheelEvent e)
 	{
-		for(PhineasScrollWheelListener listener : GameModelManager.getInstance().getMouseScrollListeners())
-			listener.onWheelMove(e.getWheelRotation());
+		// The rotation rides in the x field
+		queueInput(new PendingInput(PhineasInputRecorder.WHEEL_MOVED, null, e.getWheelRotation(), 0));
 	}
 
 }
@@ -0,0 +1,164 @@
+package org.phineas.core;
+
+import java.awt.AlphaComposite;
+import java.awt.Graphics2D;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Draws depth ordered drawables, grouping batchable drawables that share a
+ * depth so that draws from the same source are issued consecutively and
+ * shared Graphics2D state is only set once per group
+ * @author Sam Pottinger
+ */
+class GameRenderer
+{
+	private static final int MAX_RETAINED_BATCHES = 256;
+
+	private ArrayList<PhineasDrawable> unbatched;
+	private Map<Object, ArrayList<PhineasDrawable>> batches;
+	private ArrayList<Object> batchOrder;
+	private PhineasRenderState currentState;
+
+	/**
+	 * Creates a new renderer with empty (reusable) batching buffers
+	 */
+	public GameRenderer()
+	{
+		unbatched = new ArrayList<PhineasDrawable>();
+		batches = new HashMap<Object, ArrayList<PhineasDrawable>>();
+		batchOrder = new ArrayList<Object>();
+	}
+
+	/**
+	 * Draws all of the given drawables
+	 * @param drawables The drawables to draw, deepest first
+	 * @param target The context to draw on
+	 */
+	public void draw(Iterable<PhineasDrawable> drawables, Graphics2D target)
+	{
+		boolean first = true;
+		int currentDepth = 0;
+		int depth;
+		Object key;
+
+		currentState = null;
+		for(PhineasDrawable drawable : drawables)
+		{
+			if(GameModelManager.isDormant(drawable))
+				continue;
+			
+			// Everything at the previous depth has to go out before moving on
+			depth = drawable.getDepth();
+			if(!first && depth != currentDepth)
+				flush(target);
+			currentDepth = depth;
+			first = false;
+
+			// Sort into batches
+			key = null;
+			if(drawable instanceof PhineasBatchable)
+				key = ((PhineasBatchable)drawable).getBatchKey();
+
+			if(key == null)
+				unbatched.add(drawable);
+			else
+				getBatch(key).add(drawable);
+		}
+
+		flush(target);
+		restoreDefaultState(target);
+
+		// Don't hold on to buffers for keys that may never come back
+		if(batches.size() > MAX_RETAINED_BATCHES)
+			batches.clear();
+	}
+
+	/**
+	 * Get the buffer for the batch with the given key, noting the order
+	 * batches were first seen in
+	 * @param key The batch key to get the buffer for
+	 * @return Buffer to add drawables in that batch to
+	 */
+	private ArrayList<PhineasDrawable> getBatch(Object key)
+	{
+		ArrayList<PhineasDrawable> batch = batches.get(key);
+		if(batch == null)
+		{
+			batch = new ArrayList<PhineasDrawable>();
+			batches.put(key, batch);
+		}
+		if(batch.isEmpty())
+			batchOrder.add(key);
+		return batch;
+	}
+
+	/**
+	 * Draw everything collected for the current depth
+	 * @param target The context to draw on
+	 */
+	private void flush(Graphics2D target)
+	{
+		ArrayList<PhineasDrawable> batch;
+		int i;
+
+		if(!unbatched.isEmpty())
+		{
+			restoreDefaultState(target);
+			for(i = 0; i < unbatched.size(); i++)
+				unbatched.get(i).draw(target);
+			unbatched.clear();
+		}
+
+		for(i = 0; i < batchOrder.size(); i++)
+		{
+			batch = batches.get(batchOrder.get(i));
+			if(batch.get(0) instanceof PhineasStatefulDrawable)
+				drawStatefulBatch(batch, target);
+			else
+				drawBatch(batch, target);
+			batch.clear();
+		}
+		batchOrder.clear();
+	}
+
+	/**
+	 * Draw a group of drawables that share a render state, setting that state once
+	 * @param batch The drawables to draw, all of which share a render state
+	 * @param target The context to draw on
+	 */
+	private void drawStatefulBatch(ArrayList<PhineasDrawable> batch, Graphics2D target)
+	{
+		PhineasRenderState state = ((PhineasStatefulDrawable)batch.get(0)).getRenderState();
+		state.apply(target, currentState);
+		currentState = state;
+
+		for(int i = 0; i < batch.size(); i++)
+			((PhineasStatefulDrawable)batch.get(i)).drawStateless(target);
+	}
+
+	/**
+	 * Draw a group of drawables that manage their own state
+	 * @param batch The drawables to draw
+	 * @param target The context to draw on
+	 */
+	private void drawBatch(ArrayList<PhineasDrawable> batch, Graphics2D target)
+	{
+		restoreDefaultState(target);
+		for(int i = 0; i < batch.size(); i++)
+			batch.get(i).draw(target);
+	}
+
+	/**
+	 * Put the context back in the state that ordinary drawables expect and
+	 * forget what state it was left in
+	 * @param target The context to reset
+	 */
+	private void restoreDefaultState(Graphics2D target)
+	{
+		if(currentState != null && !currentState.hasDefaultComposite())
+			target.setComposite(AlphaComposite.SrcOver);
+		currentState = null;
+	}
+}
@@ -0,0 +1,23 @@
+package org.phineas.core;
+
+import jdk.jfr.Category;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * Flight Recorder event covering the game loop sleeping to hold its target FPS
+ * @author Sam Pottinger
+ */
+@Name("org.phineas.Sleep")
+@Label("Frame Sleep")
+@Category("Phineas")
+class GameSleepEvent extends jdk.jfr.Event
+{
+	@Label("Frame Number")
+	long frame;
+	
+	@Label("Requested Sleep")
+	@Timespan(Timespan.MILLISECONDS)
+	long requestedMillis;
+}
@@ -0,0 +1,21 @@
+package org.phineas.core;
+
+import jdk.jfr.Category;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight Recorder event covering staged entity adds and removes being applied
+ * @author Sam Pottinger
+ */
+@Name("org.phineas.Staging")
+@Label("Staged Actions")
+@Category("Phineas")
+class GameStagingEvent extends jdk.jfr.Event
+{
+	@Label("Entities Added")
+	int added;
+	
+	@Label("Entities Removed")
+	int removed;
+}
@@ -0,0 +1,18 @@
+package org.phineas.core;
+
+/**
+ * Interface for drawables that can be drawn back to back with other drawables
+ * sharing the same resource (like an atlas image) to cut down on state switches
+ * @note Drawables at the same depth have no guaranteed order relative to each
+ *       other, so Phineas groups batchables at a depth by their batch key
+ * @author Sam Pottinger
+ */
+public interface PhineasBatchable extends PhineasDrawable
+{
+	/**
+	 * Get the key that this drawable is grouped by when drawing
+	 * @return Object (compared with equals) shared by drawables that should be
+	 *         drawn together or null if this drawable should not be batched
+	 */
+	public Object getBatchKey();
+}
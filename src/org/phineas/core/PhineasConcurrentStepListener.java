@@ -0,0 +1,11 @@
+package org.phineas.core;
+
+/**
+ * Step listener that promises its onStep is safe to run at the same time as
+ * other concurrent step listeners' (like independent AI agents). These are
+ * split across cores each step after the ordinary step listeners have run, and
+ * all finish before anything is drawn.
+ * @author Sam Pottinger
+ */
+public interface PhineasConcurrentStepListener extends PhineasStepListener
+{}
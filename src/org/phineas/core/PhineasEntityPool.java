@@ -0,0 +1,128 @@
+package org.phineas.core;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Recycles short lived entities like bullets and particles. An entity is added
+ * to the game the first time it is created and from then on is only put to
+ * sleep and woken up, so reusing it allocates nothing and never touches the
+ * game's registries.
+ * @author Sam Pottinger
+ * @param <T> The type of entity in this pool
+ */
+public class PhineasEntityPool<T extends PhineasPoolable>
+{
+	/**
+	 * Creates new entities for a pool and readies recycled ones for reuse
+	 * @param <T> The type of entity in the pool
+	 */
+	public interface Factory<T>
+	{
+		/**
+		 * Create a brand new entity
+		 * @return New entity for the pool
+		 */
+		public T create();
+		
+		/**
+		 * Put a recycled entity back into its starting state
+		 * @param entity The entity about to be handed out again
+		 */
+		public void reset(T entity);
+	}
+	
+	private final Factory<T> factory;
+	private final GameEntityActionStager stager;
+	private final ConcurrentLinkedQueue<T> dormant;
+	private final Set<T> dormantSet;
+	
+	/**
+	 * Creates a new empty pool for entities in the current world (the one
+	 * being stepped on this thread, or the default world outside of a step)
+	 * @param newFactory The factory that creates and resets entities for this pool
+	 */
+	public PhineasEntityPool(Factory<T> newFactory)
+	{
+		this(newFactory, PhineasWorld.getCurrent());
+	}
+	
+	/**
+	 * Creates a new empty pool
+	 * @param newFactory The factory that creates and resets entities for this pool
+	 * @param world The world the pool's entities are added to
+	 */
+	public PhineasEntityPool(Factory<T> newFactory, PhineasWorld world)
+	{
+		factory = newFactory;
+		stager = world.getStager();
+		dormant = new ConcurrentLinkedQueue<T>();
+		dormantSet = Collections.synchronizedSet(Collections.newSetFromMap(new IdentityHashMap<T, Boolean>()));
+	}
+	
+	/**
+	 * Create entities ahead of time and add them to the game asleep, so later
+	 * calls to obtain don't have to
+	 * @param count The number of entities to create
+	 */
+	public void prefill(int count)
+	{
+		T entity;
+		for(int i = 0; i < count; i++)
+		{
+			entity = factory.create();
+			entity.setActive(false);
+			stager.addEntity(entity);
+			dormantSet.add(entity);
+			dormant.add(entity);
+		}
+	}
+	
+	/**
+	 * Get an entity from this pool, waking a recycled one if there is one and
+	 * otherwise creating one and adding it to the game. Like adding an entity,
+	 * it joins the game on the next frame.
+	 * @return Entity in its starting state
+	 */
+	public T obtain()
+	{
+		T entity = dormant.poll();
+		if(entity == null)
+		{
+			entity = factory.create();
+			stager.addEntity(entity);
+			return entity;
+		}
+		
+		dormantSet.remove(entity);
+		factory.reset(entity);
+		stager.activateEntity(entity);
+		return entity;
+	}
+	
+	/**
+	 * Put an entity to sleep on the next frame and make it available for reuse
+	 * @param entity The entity, previously returned by obtain, to recycle
+	 * @throws IllegalStateException Thrown if the entity was already released
+	 *                               and not obtained again since
+	 */
+	public void release(T entity)
+	{
+		// Queued twice, one entity would be handed out to two owners
+		if(!dormantSet.add(entity))
+			throw new IllegalStateException("Entity is already released to this pool");
+		stager.deactivateEntity(entity);
+		dormant.add(entity);
+	}
+	
+	/**
+	 * Get how many entities are waiting to be reused
+	 * @return Number of dormant entities in this pool
+	 */
+	public int getDormantCount()
+	{
+		return dormant.size();
+	}
+}
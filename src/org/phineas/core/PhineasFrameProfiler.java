@@ -0,0 +1,282 @@
+package org.phineas.core;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Singleton that records how long each part of every frame takes over a rolling
+ * window of recent frames. The game loop writes without locking so monitoring
+ * tools can poll the statistics from any thread.
+ * @author Sam Pottinger
+ */
+public class PhineasFrameProfiler
+{
+	public static final int WINDOW_SIZE = 512;
+
+	private static final int WINDOW_MASK = WINDOW_SIZE - 1;
+
+	private static final PhineasFrameProfiler instance = new PhineasFrameProfiler();
+
+	/**
+	 * Parts of a frame that are timed separately
+	 */
+	public enum Phase
+	{
+		/** Everything the loop does in a frame except sleeping */
+		FRAME,
+		/** Applying entity adds and removes staged since the last frame */
+		STAGING,
+		/** Dispatching the step event to step listeners */
+		STEP,
+		/** Drawing every drawable to the back buffer */
+		DRAW,
+		/** Disposing the graphics and showing the back buffer */
+		SHOW,
+		/** Time the loop spent sleeping to hold the target FPS */
+		SLEEP
+	}
+
+	/**
+	 * Immutable summary of one rolling window of timings
+	 */
+	public static class Stats
+	{
+		private final int sampleCount;
+		private final long median;
+		private final long ninetyNinth;
+		private final long max;
+		private final long mean;
+
+		private Stats(long[] sorted)
+		{
+			long total = 0;
+			for(long sample : sorted)
+				total += sample;
+
+			sampleCount = sorted.length;
+			median = percentile(sorted, 0.5);
+			ninetyNinth = percentile(sorted, 0.99);
+			max = sampleCount == 0 ? 0 : sorted[sampleCount - 1];
+			mean = sampleCount == 0 ? 0 : total / sampleCount;
+		}
+
+		private static long percentile(long[] sorted, double fraction)
+		{
+			if(sorted.length == 0)
+				return 0;
+			return sorted[(int)Math.min(sorted.length - 1, Math.ceil(fraction * sorted.length) - 1)];
+		}
+
+		/**
+		 * Get how many frames these statistics cover
+		 * @return Number of samples in the window (at most WINDOW_SIZE)
+		 */
+		public int getSampleCount() {return sampleCount;}
+
+		/**
+		 * Get the typical time taken
+		 * @return 50th percentile in nanoseconds
+		 */
+		public long getMedianNanos() {return median;}
+
+		/**
+		 * Get the time taken by the slow frames
+		 * @return 99th percentile in nanoseconds
+		 */
+		public long getNinetyNinthPercentileNanos() {return ninetyNinth;}
+
+		/**
+		 * Get the longest time taken
+		 * @return Maximum in nanoseconds
+		 */
+		public long getMaxNanos() {return max;}
+
+		/**
+		 * Get the average time taken
+		 * @return Mean in nanoseconds
+		 */
+		public long getMeanNanos() {return mean;}
+
+		@Override
+		public String toString()
+		{
+			return String.format("p50=%.3fms p99=%.3fms max=%.3fms (%d frames)",
+					median / 1e6, ninetyNinth / 1e6, max / 1e6, sampleCount);
+		}
+	}
+
+	/**
+	 * Lock free ring of the most recent samples
+	 */
+	private static class Window
+	{
+		private final AtomicLongArray samples = new AtomicLongArray(WINDOW_SIZE);
+		private final AtomicLong count = new AtomicLong();
+
+		public void record(long nanos)
+		{
+			samples.set((int)(count.getAndIncrement() & WINDOW_MASK), nanos);
+		}
+
+		public Stats getStats()
+		{
+			long[] copy = new long[(int)Math.min(count.get(), WINDOW_SIZE)];
+			for(int i = 0; i < copy.length; i++)
+				copy[i] = samples.get(i);
+			Arrays.sort(copy);
+			return new Stats(copy);
+		}
+
+		public void clear()
+		{
+			count.set(0);
+		}
+	}
+
+	/**
+	 * Per frame totals for step listeners of one class
+	 */
+	private static class ListenerTiming
+	{
+		private final AtomicLong frameNanos = new AtomicLong();
+		private final Window window = new Window();
+	}
+
+	private final Window[] phases;
+	private final ConcurrentHashMap<Class<?>, ListenerTiming> listeners;
+	private volatile boolean enabled;
+	private volatile boolean listenerTimingEnabled;
+
+	/**
+	 * Get access to a shared instance of this profiler
+	 * @return Shared instance of this singleton
+	 */
+	public static PhineasFrameProfiler getInstance()
+	{
+		return instance;
+	}
+
+	/**
+	 * Private constructor for this singleton
+	 */
+	private PhineasFrameProfiler()
+	{
+		phases = new Window[Phase.values().length];
+		for(int i = 0; i < phases.length; i++)
+			phases[i] = new Window();
+		listeners = new ConcurrentHashMap<Class<?>, ListenerTiming>();
+		enabled = true;
+	}
+
+	/**
+	 * Turn phase timing on or off (on by default)
+	 * @param newEnabled If false, the game loop records nothing
+	 */
+	public void setEnabled(boolean newEnabled)
+	{
+		enabled = newEnabled;
+	}
+
+	/**
+	 * Determine if phase timing is on
+	 * @return true if the game loop is recording timings
+	 */
+	public boolean isEnabled()
+	{
+		return enabled;
+	}
+
+	/**
+	 * Turn timing of individual step listeners on or off (off by default since
+	 * it reads the clock twice per listener)
+	 * @param newEnabled If true, step time is attributed to listener classes
+	 */
+	public void setListenerTimingEnabled(boolean newEnabled)
+	{
+		listenerTimingEnabled = newEnabled;
+	}
+
+	/**
+	 * Determine if individual step listeners are being timed
+	 * @return true if step time is being attributed to listener classes
+	 */
+	public boolean isListenerTimingEnabled()
+	{
+		return listenerTimingEnabled && enabled;
+	}
+
+	/**
+	 * Get statistics for one part of the frame
+	 * @param phase The part of the frame to summarize
+	 * @return Statistics over the last WINDOW_SIZE frames
+	 */
+	public Stats getStats(Phase phase)
+	{
+		return phases[phase.ordinal()].getStats();
+	}
+
+	/**
+	 * Get statistics for the time each class of step listener takes per frame,
+	 * summed over every instance of that class
+	 * @return Statistics over the last WINDOW_SIZE frames keyed by listener class
+	 */
+	public Map<Class<?>, Stats> getListenerStats()
+	{
+		Map<Class<?>, Stats> stats = new HashMap<Class<?>, Stats>();
+		for(Map.Entry<Class<?>, ListenerTiming> entry : listeners.entrySet())
+			stats.put(entry.getKey(), entry.getValue().window.getStats());
+		return stats;
+	}
+
+	/**
+	 * Forget every recorded timing
+	 */
+	public void reset()
+	{
+		for(Window window : phases)
+			window.clear();
+		listeners.clear();
+	}
+
+	/**
+	 * Record how long part of a frame took
+	 * @param phase The part of the frame that was timed
+	 * @param nanos How long it took in nanoseconds
+	 */
+	void record(Phase phase, long nanos)
+	{
+		phases[phase.ordinal()].record(nanos);
+	}
+
+	/**
+	 * Add time spent in one step listener to its class's total for this frame
+	 * @param listener The listener that was called
+	 * @param nanos How long it took in nanoseconds
+	 */
+	void recordListener(Object listener, long nanos)
+	{
+		Class<?> type = listener.getClass();
+		ListenerTiming timing = listeners.get(type);
+		if(timing == null)
+		{
+			ListenerTiming newTiming = new ListenerTiming();
+			timing = listeners.putIfAbsent(type, newTiming);
+			if(timing == null)
+				timing = newTiming;
+		}
+		timing.frameNanos.addAndGet(nanos);
+	}
+
+	/**
+	 * Close out the per listener totals for the frame that just finished
+	 */
+	void endListenerFrame()
+	{
+		for(ListenerTiming timing : listeners.values())
+			timing.window.record(timing.frameNanos.getAndSet(0));
+	}
+}
@@ -1,5 +1,8 @@
 package org.phineas.core;
 
+import java.io.IOException;
+import java.nio.file.Path;
+
 /**
  * Singleton facade for the simple Phineas game framework
  * @author Sam Pottinger
@@ -140,22 +143,99 @@ public class PhineasGameFacade
 	}
 	
 	/**
-	 * Adds the given entity to this game facade in all the ways it possibly can
-	 * given the interfaces the entity implements
+	 * Get the game's clock, shared by everything that animates off of it
+	 * @return Number of milliseconds the current world has run for (the world
+	 *         being stepped on this thread, or the shown world outside of a step)
+	 */
+	public long getGameTime()
+	{
+		return getCurrentWorld().getGameTime();
+	}
+	
+	/**
+	 * Get the profiler timing each part of the game loop's frames
+	 * @return Shared frame profiler
+	 */
+	public PhineasFrameProfiler getProfiler()
+	{
+		return PhineasFrameProfiler.getInstance();
+	}
+	
+	/**
+	 * Log every input event and step from now on for PhineasInputReplay,
+	 * replacing the given file
+	 * @param file Where to write the log
+	 * @throws IOException Thrown if the file can't be opened
+	 * @throws PhineasException Thrown if the game is already being recorded
+	 */
+	public void startRecording(Path file) throws IOException, PhineasException
+	{
+		if(gamePresenter.getRecorder() != null)
+			throw new PhineasException("Game is already being recorded");
+		gamePresenter.setRecorder(new PhineasInputRecorder(file));
+	}
+	
+	/**
+	 * Stop logging input and finish writing the log. Does nothing if the game
+	 * is not being recorded.
+	 * @throws IOException Thrown if writing the log failed
+	 */
+	public void stopRecording() throws IOException
+	{
+		PhineasInputRecorder recorder = gamePresenter.getRecorder();
+		if(recorder == null)
+			return;
+		gamePresenter.setRecorder(null);
+		recorder.close();
+	}
+	
+	/**
+	 * Get the world being shown, stepped and sent input
+	 * @return The shown world (PhineasWorld.getDefault() unless changed)
+	 */
+	public PhineasWorld getWorld()
+	{
+		return gamePresenter.getWorld();
+	}
+	
+	/**
+	 * Show a different world, like to switch scenes, starting with the next
+	 * step. The previous world keeps its entities but stops advancing.
+	 * @param newWorld The world to show
+	 */
+	public void setWorld(PhineasWorld newWorld)
+	{
+		gamePresenter.setWorld(newWorld);
+	}
+	
+	/**
+	 * Adds the given entity to the current world (the world being stepped on
+	 * this thread, or the shown world outside of a step) in all the ways it
+	 * possibly can given the interfaces the entity implements
 	 * @param targetEntity The entity to add
 	 */
 	public void addEntity(Object targetEntity)
 	{
-		GameEntityActionStager.getInstance().addEntity(targetEntity);
+		getCurrentWorld().addEntity(targetEntity);
 	}
 	
 	/**
-	 * Removes the given entity to this game facade in all the ways it possibly can
-	 * given the interfaces the entity implements
+	 * Removes the given entity from the current world (the world being stepped
+	 * on this thread, or the shown world outside of a step) in all the ways it
+	 * possibly can given the interfaces the entity implements
 	 * @param targetEntity The entity to add
 	 */
 	public void removeEntity(Object targetEntity)
 	{
-		GameEntityActionStager.getInstance().removeEntity(targetEntity);
+		getCurrentWorld().removeEntity(targetEntity);
+	}
+	
+	/**
+	 * Get the world entities and the clock refer to from the calling code
+	 */
+	private PhineasWorld getCurrentWorld()
+	{
+		PhineasWorld world = PhineasWorld.getStepping();
+		return world == null ? gamePresenter.getWorld() : world;
 	}
 }
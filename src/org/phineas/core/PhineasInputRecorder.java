@@ -0,0 +1,231 @@
+package org.phineas.core;
+
+import java.awt.event.KeyEvent;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * Append only log of every input event the game dispatches and the delta of
+ * every step, written from the game loop as each step's input is dispatched,
+ * for replaying a session exactly with PhineasInputReplay. Events
+ * are packed into buffers that a background thread writes to the file, so
+ * recording never waits on the disk. Start recording with
+ * PhineasGameFacade.startRecording.
+ * @author Sam Pottinger
+ */
+public class PhineasInputRecorder
+{
+	static final int MAGIC = 0x50484950;
+	static final int VERSION = 1;
+	static final int HEADER_SIZE = 8;
+	
+	// Record types, each followed by its fields
+	static final byte TICK = 0;
+	static final byte KEY_PRESSED = 1;
+	static final byte KEY_RELEASED = 2;
+	static final byte LEFT_DOWN = 3;
+	static final byte LEFT_RELEASE = 4;
+	static final byte MOUSE_MOVED = 5;
+	static final byte WHEEL_MOVED = 6;
+	
+	private static final int BUFFER_SIZE = 64 * 1024;
+	private static final int MAX_RECORD_SIZE = 16;
+	
+	// Hand buffers to the writer once they are this full or this many steps old
+	private static final int FLUSH_BYTES = 16 * 1024;
+	private static final int FLUSH_TICKS = 64;
+	
+	private static final ByteBuffer END = ByteBuffer.allocate(0);
+	
+	private final FileChannel channel;
+	private final BlockingQueue<ByteBuffer> filled;
+	private final ConcurrentLinkedQueue<ByteBuffer> spare;
+	private final Thread writer;
+	private ByteBuffer current;
+	private int ticksSinceFlush;
+	private boolean closed;
+	private volatile IOException failure;
+	
+	/**
+	 * Creates a new recorder, replacing the given file
+	 * @param file Where to write the log
+	 * @throws IOException Thrown if the file can't be opened
+	 */
+	public PhineasInputRecorder(Path file) throws IOException
+	{
+		channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+				StandardOpenOption.WRITE);
+		filled = new LinkedBlockingQueue<ByteBuffer>();
+		spare = new ConcurrentLinkedQueue<ByteBuffer>();
+		current = ByteBuffer.allocateDirect(BUFFER_SIZE);
+		current.putInt(MAGIC).putInt(VERSION);
+		
+		writer = new Thread("PhineasInputRecorder")
+		{
+			@Override
+			public void run()
+			{
+				writeLoop();
+			}
+		};
+		writer.setDaemon(true);
+		writer.start();
+	}
+	
+	/**
+	 * Log a key event
+	 * @param type KEY_PRESSED or KEY_RELEASED
+	 * @param e The event
+	 */
+	synchronized void recordKey(byte type, KeyEvent e)
+	{
+		if(closed)
+			return;
+		reserve();
+		current.put(type).putInt(e.getKeyCode()).putChar(e.getKeyChar()).putInt(e.getModifiersEx())
+				.put((byte)e.getKeyLocation());
+	}
+	
+	/**
+	 * Log a mouse button or movement event
+	 * @param type LEFT_DOWN, LEFT_RELEASE or MOUSE_MOVED
+	 * @param mouseX The x position of the mouse
+	 * @param mouseY The y position of the mouse
+	 */
+	synchronized void recordMouse(byte type, int mouseX, int mouseY)
+	{
+		if(closed)
+			return;
+		reserve();
+		current.put(type).putInt(mouseX).putInt(mouseY);
+	}
+	
+	/**
+	 * Log a scroll wheel event
+	 * @param rotation The number of notches the wheel moved
+	 */
+	synchronized void recordWheel(int rotation)
+	{
+		if(closed)
+			return;
+		reserve();
+		current.put(WHEEL_MOVED).putInt(rotation);
+	}
+	
+	/**
+	 * Log a step, which the events logged since the last step come before
+	 * @param milliseconds The step's delta
+	 */
+	synchronized void recordTick(long milliseconds)
+	{
+		if(closed)
+			return;
+		reserve();
+		current.put(TICK).putInt((int)milliseconds);
+		
+		ticksSinceFlush++;
+		if(current.position() >= FLUSH_BYTES || ticksSinceFlush >= FLUSH_TICKS)
+			handOff();
+	}
+	
+	/**
+	 * Write out everything logged so far and close the file
+	 * @throws IOException Thrown if any write failed
+	 */
+	public void close() throws IOException
+	{
+		synchronized(this)
+		{
+			if(closed)
+				return;
+			closed = true;
+			if(current.position() > 0)
+				handOff();
+			filled.add(END);
+		}
+		
+		boolean interrupted = false;
+		while(writer.isAlive())
+		{
+			try
+			{
+				writer.join();
+			}
+			catch(InterruptedException e)
+			{
+				interrupted = true;
+			}
+		}
+		if(interrupted)
+			Thread.currentThread().interrupt();
+		
+		channel.close();
+		if(failure != null)
+			throw failure;
+	}
+	
+	/**
+	 * Make room for one more record
+	 */
+	private void reserve()
+	{
+		if(current.remaining() < MAX_RECORD_SIZE)
+			handOff();
+	}
+	
+	/**
+	 * Give the current buffer to the writer and start filling another
+	 */
+	private void handOff()
+	{
+		current.flip();
+		filled.add(current);
+		current = spare.poll();
+		if(current == null)
+			current = ByteBuffer.allocateDirect(BUFFER_SIZE);
+		ticksSinceFlush = 0;
+	}
+	
+	/**
+	 * Writer thread body
+	 */
+	private void writeLoop()
+	{
+		ByteBuffer buffer;
+		while(true)
+		{
+			try
+			{
+				buffer = filled.take();
+			}
+			catch(InterruptedException e)
+			{
+				return;
+			}
+			if(buffer == END)
+				return;
+			
+			// Keep draining after a failure so the game never backs up behind it
+			if(failure == null)
+			{
+				try
+				{
+					while(buffer.hasRemaining())
+						channel.write(buffer);
+				}
+				catch(IOException e)
+				{
+					failure = e;
+				}
+			}
+			buffer.clear();
+			spare.add(buffer);
+		}
+	}
+}
@@ -0,0 +1,174 @@
+package org.phineas.core;
+
+import java.awt.Component;
+import java.awt.event.KeyEvent;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Plays back a log written by PhineasInputRecorder into a world, sending each
+ * step's input through the same dispatch the window uses and then stepping
+ * with the recorded delta. Nothing is drawn and nothing waits, so sessions
+ * replay headlessly as fast as the world can step, for regression tests and
+ * benchmarks. Start the world in the same state it was recorded from.
+ * @author Sam Pottinger
+ */
+public class PhineasInputReplay
+{
+	// Key events need a component to come from
+	private static final Component SOURCE = new Component()
+	{
+		private static final long serialVersionUID = 1L;
+	};
+	
+	private final ByteBuffer log;
+	private long tickCount;
+	
+	/**
+	 * Creates a new replay of the given log
+	 * @param file The log to play back
+	 * @throws IOException Thrown if the log can't be read
+	 * @throws PhineasException Thrown if the file is not an input log this version can read
+	 */
+	public PhineasInputReplay(Path file) throws IOException, PhineasException
+	{
+		FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+		try
+		{
+			log = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		}
+		finally
+		{
+			channel.close();
+		}
+		
+		if(log.remaining() < PhineasInputRecorder.HEADER_SIZE || log.getInt() != PhineasInputRecorder.MAGIC)
+			throw new PhineasException("Not an input log");
+		int version = log.getInt();
+		if(version != PhineasInputRecorder.VERSION)
+			throw new PhineasException("Unsupported input log version " + version);
+	}
+	
+	/**
+	 * Replay the input of the next recorded step and then step the world
+	 * @param world The world to replay into
+	 * @return false if the log has no more steps (a log cut off part way
+	 *         through a step, like after a crash, ends at the last full step)
+	 * @throws PhineasException Thrown if the log is damaged
+	 */
+	public boolean step(PhineasWorld world) throws PhineasException
+	{
+		int recordStart;
+		byte type;
+		
+		while(log.hasRemaining())
+		{
+			recordStart = log.position();
+			type = log.get();
+			switch(type)
+			{
+			case PhineasInputRecorder.TICK:
+				if(!hasBody(recordStart, 4))
+					return false;
+				world.step(log.getInt());
+				tickCount++;
+				return true;
+			case PhineasInputRecorder.KEY_PRESSED:
+			case PhineasInputRecorder.KEY_RELEASED:
+				if(!hasBody(recordStart, 11))
+					return false;
+				dispatchKey(world, type);
+				break;
+			case PhineasInputRecorder.LEFT_DOWN:
+				if(!hasBody(recordStart, 8))
+					return false;
+				world.leftDown(log.getInt(), log.getInt());
+				break;
+			case PhineasInputRecorder.LEFT_RELEASE:
+				if(!hasBody(recordStart, 8))
+					return false;
+				world.leftRelease(log.getInt(), log.getInt());
+				break;
+			case PhineasInputRecorder.MOUSE_MOVED:
+				if(!hasBody(recordStart, 8))
+					return false;
+				world.mouseMoved(log.getInt(), log.getInt());
+				break;
+			case PhineasInputRecorder.WHEEL_MOVED:
+				if(!hasBody(recordStart, 4))
+					return false;
+				world.mouseWheelMoved(log.getInt());
+				break;
+			default:
+				throw new PhineasException("Unknown input record type " + type + " at " + (log.position() - 1));
+			}
+		}
+		return false;
+	}
+	
+	/**
+	 * Replay every remaining step
+	 * @param world The world to replay into
+	 * @return The number of steps replayed by this call
+	 * @throws PhineasException Thrown if the log is damaged
+	 */
+	public long run(PhineasWorld world) throws PhineasException
+	{
+		long start = tickCount;
+		while(step(world));
+		return tickCount - start;
+	}
+	
+	/**
+	 * Go back to the start of the log, like to replay into a fresh world
+	 */
+	public void rewind()
+	{
+		log.position(PhineasInputRecorder.HEADER_SIZE);
+		tickCount = 0;
+	}
+	
+	/**
+	 * Get how many steps have been replayed
+	 * @return Number of steps since the start of the log
+	 */
+	public long getTickCount()
+	{
+		return tickCount;
+	}
+	
+	/**
+	 * Determine if the rest of a record made it into the log. If it was cut
+	 * off, the log is left at the start of the record so later calls see the
+	 * same end.
+	 * @param recordStart Where the record's type byte is
+	 * @param size How many bytes follow the type byte
+	 * @return true if the whole record can be read
+	 */
+	private boolean hasBody(int recordStart, int size)
+	{
+		if(log.remaining() >= size)
+			return true;
+		log.position(recordStart);
+		return false;
+	}
+	
+	/**
+	 * Rebuild a key event from the log and send it to the world
+	 */
+	private void dispatchKey(PhineasWorld world, byte type)
+	{
+		int keyCode = log.getInt();
+		char keyChar = log.getChar();
+		int modifiers = log.getInt();
+		int location = log.get();
+		
+		if(type == PhineasInputRecorder.KEY_PRESSED)
+			world.keyPressed(new KeyEvent(SOURCE, KeyEvent.KEY_PRESSED, 0, modifiers, keyCode, keyChar, location));
+		else
+			world.keyReleased(new KeyEvent(SOURCE, KeyEvent.KEY_RELEASED, 0, modifiers, keyCode, keyChar, location));
+	}
+}
@@ -0,0 +1,329 @@
+package org.phineas.core;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.Transparency;
+import java.awt.event.KeyEvent;
+import java.awt.image.BufferedImage;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+
+/**
+ * Debugging overlay drawn over everything else that shows recent frame times,
+ * how many entities are registered and memory use. Add it to the game with
+ * PhineasGameFacade.addEntity and press its key to show or hide it. Everything
+ * it draws with is allocated up front so it does not skew what it measures.
+ * @author Sam Pottinger
+ */
+public class PhineasPerformanceOverlay implements PhineasDrawable, PhineasKeyListener
+{
+	public static final int DEFAULT_TOGGLE_KEY = KeyEvent.VK_F3;
+
+	private static final int WIDTH = 260;
+	private static final int PADDING = 6;
+	private static final int GRAPH_HEIGHT = 60;
+	private static final int HISTOGRAM_HEIGHT = 30;
+	private static final int LINE_HEIGHT = 14;
+	private static final int LINE_COUNT = 4;
+	private static final int HEIGHT = PADDING * 4 + GRAPH_HEIGHT + HISTOGRAM_HEIGHT + LINE_HEIGHT * LINE_COUNT;
+	private static final int SAMPLES = WIDTH - PADDING * 2;
+	private static final int HISTOGRAM_BUCKETS = 25;
+	private static final long GRAPH_MAX_NANOS = 50L * 1000 * 1000;
+	private static final long TEXT_REFRESH_NANOS = 500L * 1000 * 1000;
+	private static final int MAX_LINE_LENGTH = 64;
+
+	private static final Color BACKGROUND_COLOR = new Color(0, 0, 0, 180);
+	private static final Color GUIDE_COLOR = new Color(255, 255, 255, 60);
+	private static final Color GRAPH_COLOR = new Color(80, 220, 80);
+	private static final Color HISTOGRAM_COLOR = new Color(220, 180, 60);
+	private static final Color TEXT_COLOR = Color.WHITE;
+	private static final Font FONT = new Font(Font.MONOSPACED, Font.PLAIN, 11);
+
+	private final int x;
+	private final int y;
+	private final int toggleKey;
+	private final long[] frameNanos;
+	private final int[] graphX;
+	private final int[] graphY;
+	private final int[] histogram;
+	private final char[][] lines;
+	private final int[] lineLengths;
+	private final StringBuilder lineBuilder;
+	private final List<GarbageCollectorMXBean> collectors;
+	private BufferedImage background;
+	private volatile boolean visible;
+	private int nextSample;
+	private int sampleCount;
+	private long lastDrawNanos;
+	private long lastTextNanos;
+
+	/**
+	 * Creates a new hidden overlay in the top left corner toggled by F3
+	 */
+	public PhineasPerformanceOverlay()
+	{
+		this(10, 10, DEFAULT_TOGGLE_KEY);
+	}
+
+	/**
+	 * Creates a new hidden overlay
+	 * @param newX The horizontal position of the overlay's top left corner
+	 * @param newY The vertical position of the overlay's top left corner
+	 * @param newToggleKey The KeyEvent key code that shows or hides the overlay
+	 */
+	public PhineasPerformanceOverlay(int newX, int newY, int newToggleKey)
+	{
+		x = newX;
+		y = newY;
+		toggleKey = newToggleKey;
+		frameNanos = new long[SAMPLES];
+		graphX = new int[SAMPLES];
+		graphY = new int[SAMPLES];
+		histogram = new int[HISTOGRAM_BUCKETS];
+		lines = new char[LINE_COUNT][MAX_LINE_LENGTH];
+		lineLengths = new int[LINE_COUNT];
+		lineBuilder = new StringBuilder(MAX_LINE_LENGTH);
+		collectors = ManagementFactory.getGarbageCollectorMXBeans();
+
+		for(int i = 0; i < SAMPLES; i++)
+			graphX[i] = x + PADDING + i;
+	}
+
+	/**
+	 * Show or hide this overlay
+	 * @param newVisible If true, this overlay is drawn
+	 */
+	public void setVisible(boolean newVisible)
+	{
+		visible = newVisible;
+		lastDrawNanos = 0;
+	}
+
+	/**
+	 * Determine if this overlay is being drawn
+	 * @return true if this overlay is showing
+	 */
+	public boolean isVisible()
+	{
+		return visible;
+	}
+
+	@Override
+	public void keyPressed(KeyEvent e)
+	{
+		if(e.getKeyCode() == toggleKey)
+			setVisible(!visible);
+	}
+
+	@Override
+	public void keyReleased(KeyEvent e) {}
+
+	@Override
+	public int getDepth()
+	{
+		return Integer.MIN_VALUE;
+	}
+
+	@Override
+	public void draw(Graphics2D target)
+	{
+		if(!visible)
+			return;
+
+		long now = System.nanoTime();
+		if(lastDrawNanos != 0)
+			recordFrame(now - lastDrawNanos);
+		lastDrawNanos = now;
+
+		if(now - lastTextNanos >= TEXT_REFRESH_NANOS)
+		{
+			updateText();
+			lastTextNanos = now;
+		}
+
+		if(background == null)
+			background = createBackground(target);
+		target.drawImage(background, x, y, null);
+
+		drawGraph(target);
+		drawHistogram(target);
+
+		target.setColor(TEXT_COLOR);
+		target.setFont(FONT);
+		int baseline = y + PADDING * 3 + GRAPH_HEIGHT + HISTOGRAM_HEIGHT + LINE_HEIGHT - 3;
+		for(int i = 0; i < LINE_COUNT; i++)
+			target.drawChars(lines[i], 0, lineLengths[i], x + PADDING, baseline + i * LINE_HEIGHT);
+	}
+
+	/**
+	 * Add a frame interval to the rolling graph
+	 */
+	private void recordFrame(long nanos)
+	{
+		frameNanos[nextSample] = nanos;
+		nextSample = (nextSample + 1) % SAMPLES;
+		if(sampleCount < SAMPLES)
+			sampleCount++;
+	}
+
+	/**
+	 * Draw frame intervals as a line, oldest on the left
+	 */
+	private void drawGraph(Graphics2D target)
+	{
+		int bottom = y + PADDING + GRAPH_HEIGHT;
+		int first = (nextSample - sampleCount + SAMPLES) % SAMPLES;
+		long nanos;
+
+		if(sampleCount < 2)
+			return;
+
+		for(int i = 0; i < sampleCount; i++)
+		{
+			nanos = Math.min(frameNanos[(first + i) % SAMPLES], GRAPH_MAX_NANOS);
+			graphY[i] = bottom - (int)(nanos * GRAPH_HEIGHT / GRAPH_MAX_NANOS);
+		}
+
+		target.setColor(GRAPH_COLOR);
+		target.drawPolyline(graphX, graphY, sampleCount);
+	}
+
+	/**
+	 * Draw how many recent frames fell into each 2ms bucket
+	 */
+	private void drawHistogram(Graphics2D target)
+	{
+		int bottom = y + PADDING * 2 + GRAPH_HEIGHT + HISTOGRAM_HEIGHT;
+		int barWidth = SAMPLES / HISTOGRAM_BUCKETS;
+		int tallest = 1;
+		int bucket;
+		int barHeight;
+
+		for(int i = 0; i < HISTOGRAM_BUCKETS; i++)
+			histogram[i] = 0;
+		for(int i = 0; i < sampleCount; i++)
+		{
+			bucket = (int)(frameNanos[i] * HISTOGRAM_BUCKETS / GRAPH_MAX_NANOS);
+			histogram[Math.min(bucket, HISTOGRAM_BUCKETS - 1)]++;
+		}
+		for(int count : histogram)
+			tallest = Math.max(tallest, count);
+
+		target.setColor(HISTOGRAM_COLOR);
+		for(int i = 0; i < HISTOGRAM_BUCKETS; i++)
+		{
+			barHeight = histogram[i] * HISTOGRAM_HEIGHT / tallest;
+			if(barHeight > 0)
+				target.fillRect(x + PADDING + i * barWidth, bottom - barHeight, barWidth - 1, barHeight);
+		}
+	}
+
+	/**
+	 * Refresh the text lines. Only runs a couple of times a second.
+	 */
+	private void updateText()
+	{
+		PhineasFrameProfiler profiler = PhineasFrameProfiler.getInstance();
+		GameModelManager model = GamePresenter.getInstance().getWorld().getModelManager();
+		Runtime runtime = Runtime.getRuntime();
+		long frameTotal = 0;
+		long gcCount = 0;
+		long gcMillis = 0;
+
+		for(int i = 0; i < sampleCount; i++)
+			frameTotal += frameNanos[i];
+		for(GarbageCollectorMXBean collector : collectors)
+		{
+			gcCount += Math.max(0, collector.getCollectionCount());
+			gcMillis += Math.max(0, collector.getCollectionTime());
+		}
+
+		lineBuilder.setLength(0);
+		lineBuilder.append("fps ");
+		appendTenths(frameTotal == 0 ? 0 : sampleCount * 10000000000L / frameTotal);
+		if(profiler.isEnabled())
+		{
+			PhineasFrameProfiler.Stats frame = profiler.getStats(PhineasFrameProfiler.Phase.FRAME);
+			lineBuilder.append("  work p50 ");
+			appendTenths(frame.getMedianNanos() / 100000);
+			lineBuilder.append(" p99 ");
+			appendTenths(frame.getNinetyNinthPercentileNanos() / 100000);
+			lineBuilder.append("ms");
+		}
+		setLine(0);
+
+		lineBuilder.setLength(0);
+		lineBuilder.append("drawables ").append(model.getDrawableCount());
+		lineBuilder.append("  steps ").append(model.getStepListenerCount());
+		setLine(1);
+
+		lineBuilder.setLength(0);
+		lineBuilder.append("keys ").append(model.getKeyListenerCount());
+		lineBuilder.append(" hover ").append(model.getHoverListenerCount());
+		lineBuilder.append(" click ").append(model.getClickListenerCount() + model.getGlobalClickListenerCount());
+		lineBuilder.append(" mouse ").append(
+				model.getGlobalMouseMovementListenerCount() + model.getMouseScrollListenerCount());
+		setLine(2);
+
+		lineBuilder.setLength(0);
+		lineBuilder.append("heap ").append((runtime.totalMemory() - runtime.freeMemory()) >> 20);
+		lineBuilder.append('/').append(runtime.maxMemory() >> 20).append("MB");
+		lineBuilder.append("  gc ").append(gcCount).append(" (").append(gcMillis).append("ms)");
+		setLine(3);
+	}
+
+	/**
+	 * Append a value given in tenths with one decimal place
+	 */
+	private void appendTenths(long tenths)
+	{
+		lineBuilder.append(tenths / 10).append('.').append(tenths % 10);
+	}
+
+	/**
+	 * Copy the line builder into one of the preallocated lines
+	 */
+	private void setLine(int index)
+	{
+		int length = Math.min(lineBuilder.length(), MAX_LINE_LENGTH);
+		lineBuilder.getChars(0, length, lines[index], 0);
+		lineLengths[index] = length;
+	}
+
+	/**
+	 * Render the parts of the overlay that never change
+	 */
+	private BufferedImage createBackground(Graphics2D target)
+	{
+		BufferedImage image;
+		Graphics2D graphics;
+		int guideY;
+
+		if(target.getDeviceConfiguration() != null)
+			image = target.getDeviceConfiguration().createCompatibleImage(WIDTH, HEIGHT, Transparency.TRANSLUCENT);
+		else
+			image = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_ARGB);
+
+		graphics = image.createGraphics();
+		graphics.setColor(BACKGROUND_COLOR);
+		graphics.fillRect(0, 0, WIDTH, HEIGHT);
+
+		// Guides at 60 and 30 FPS
+		graphics.setColor(GUIDE_COLOR);
+		graphics.setFont(FONT);
+		guideY = PADDING + GRAPH_HEIGHT - (int)(16666667L * GRAPH_HEIGHT / GRAPH_MAX_NANOS);
+		graphics.drawLine(PADDING, guideY, WIDTH - PADDING, guideY);
+		graphics.drawString("60", WIDTH - PADDING - 14, guideY - 2);
+		guideY = PADDING + GRAPH_HEIGHT - (int)(33333333L * GRAPH_HEIGHT / GRAPH_MAX_NANOS);
+		graphics.drawLine(PADDING, guideY, WIDTH - PADDING, guideY);
+		graphics.drawString("30", WIDTH - PADDING - 14, guideY - 2);
+		graphics.drawRect(PADDING, PADDING, SAMPLES - 1, GRAPH_HEIGHT);
+		graphics.drawLine(PADDING, PADDING * 2 + GRAPH_HEIGHT + HISTOGRAM_HEIGHT,
+				WIDTH - PADDING, PADDING * 2 + GRAPH_HEIGHT + HISTOGRAM_HEIGHT);
+
+		graphics.dispose();
+		return image;
+	}
+}
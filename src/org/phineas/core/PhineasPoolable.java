@@ -0,0 +1,22 @@
+package org.phineas.core;
+
+/**
+ * Interface for entities that can be parked in a PhineasEntityPool instead of
+ * being removed from the game. Dormant entities stay registered but are not
+ * drawn, stepped or sent input.
+ * @author Sam Pottinger
+ */
+public interface PhineasPoolable
+{
+	/**
+	 * Wake this entity up or put it to sleep (called by the game between frames)
+	 * @param newActive If false, the game skips this entity until reactivated
+	 */
+	public void setActive(boolean newActive);
+	
+	/**
+	 * Determine if the game should currently use this entity
+	 * @return true if this entity is awake, false if it is dormant
+	 */
+	public boolean isActive();
+}
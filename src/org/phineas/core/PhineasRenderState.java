@@ -0,0 +1,139 @@
+package org.phineas.core;
+
+import java.awt.AlphaComposite;
+import java.awt.Color;
+import java.awt.Composite;
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.Image;
+
+/**
+ * Immutable description of the Graphics2D state a drawable needs (color, composite,
+ * font) plus the image it draws from. Drawables at the same depth with equal render
+ * states are drawn together so each state change is made once per group.
+ * @author Sam Pottinger
+ */
+public final class PhineasRenderState
+{
+	private static final Composite DEFAULT_COMPOSITE = AlphaComposite.SrcOver;
+
+	private final Color color;
+	private final Composite composite;
+	private final Font font;
+	private final Image image;
+	private final int hash;
+
+	/**
+	 * Creates a new render state
+	 * @param newColor The color to draw with or null if the drawable doesn't use one
+	 * @param newComposite The composite to draw with or null for opaque source over
+	 * @param newFont The font to draw with or null if the drawable doesn't use one
+	 * @param newImage The image the drawable draws from or null if it doesn't use one
+	 */
+	public PhineasRenderState(Color newColor, Composite newComposite, Font newFont, Image newImage)
+	{
+		color = newColor;
+		composite = newComposite == null ? DEFAULT_COMPOSITE : newComposite;
+		font = newFont;
+		image = newImage;
+
+		int newHash = color == null ? 0 : color.hashCode();
+		newHash = 31 * newHash + composite.hashCode();
+		newHash = 31 * newHash + (font == null ? 0 : font.hashCode());
+		newHash = 31 * newHash + (image == null ? 0 : System.identityHashCode(image));
+		hash = newHash;
+	}
+
+	/**
+	 * Make the given context use this state, only changing what differs from
+	 * the state it was last left in
+	 * @param target The context to update
+	 * @param previous The state last applied to the target or null if unknown
+	 */
+	public void apply(Graphics2D target, PhineasRenderState previous)
+	{
+		if(previous == null)
+		{
+			if(color != null)
+				target.setColor(color);
+			target.setComposite(composite);
+			if(font != null)
+				target.setFont(font);
+			return;
+		}
+
+		if(color != null && !color.equals(previous.color))
+			target.setColor(color);
+		if(!composite.equals(previous.composite))
+			target.setComposite(composite);
+		if(font != null && !font.equals(previous.font))
+			target.setFont(font);
+	}
+
+	/**
+	 * Determine if this state draws with the composite Phineas leaves contexts in
+	 * @return true if this state uses opaque source over compositing
+	 */
+	public boolean hasDefaultComposite()
+	{
+		return composite.equals(DEFAULT_COMPOSITE);
+	}
+
+	/**
+	 * Get the color of this state
+	 * @return The color drawables in this state use or null if they don't use one
+	 */
+	public Color getColor()
+	{
+		return color;
+	}
+
+	/**
+	 * Get the composite of this state
+	 * @return The composite drawables in this state use
+	 */
+	public Composite getComposite()
+	{
+		return composite;
+	}
+
+	/**
+	 * Get the font of this state
+	 * @return The font drawables in this state use or null if they don't use one
+	 */
+	public Font getFont()
+	{
+		return font;
+	}
+
+	/**
+	 * Get the image of this state
+	 * @return The image drawables in this state draw from or null if they don't use one
+	 */
+	public Image getImage()
+	{
+		return image;
+	}
+
+	@Override
+	public boolean equals(Object other)
+	{
+		if(this == other)
+			return true;
+		if(!(other instanceof PhineasRenderState))
+			return false;
+
+		PhineasRenderState otherState = (PhineasRenderState)other;
+		return hash == otherState.hash
+				&& image == otherState.image
+				&& (color == null ? otherState.color == null : color.equals(otherState.color))
+				&& composite.equals(otherState.composite)
+				&& (font == null ? otherState.font == null : font.equals(otherState.font));
+	}
+
+	@Override
+	public int hashCode()
+	{
+		return hash;
+	}
+}
@@ -0,0 +1,488 @@
+package org.phineas.core;
+
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.NoninvertibleTransformException;
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Node in a tree of drawables positioned relative to their parents. Each node
+ * has a position, rotation and scale that are composed with its parent's, and
+ * optionally some content drawn in the node's coordinate space (a sprite at 0,
+ * 0 sits on the node's origin). Moving a node moves its whole subtree.
+ * <p>
+ * World transforms and the bounds of each subtree are cached and only
+ * recomputed after something under them changes, so drawing and hit testing
+ * can skip a whole subtree that is off screen or away from the mouse with one
+ * check. Only the root is added to the game; it draws the rest of the tree.
+ * Content that is not a PhineasBoundable can't be culled, so neither can the
+ * subtrees containing it. Culling uses the graphics clip, which the game
+ * window always sets, or a viewport given to the root. Like other entities,
+ * nodes are not thread safe.
+ * @author Sam Pottinger
+ */
+public class PhineasSceneNode implements PhineasDrawable, PhineasPlaceable
+{
+	private final PhineasDrawable content;
+	private final int depth;
+	private final List<PhineasSceneNode> children;
+	private PhineasSceneNode parent;
+
+	// Local transform
+	private int x;
+	private int y;
+	private double rotation;
+	private double scaleX = 1;
+	private double scaleY = 1;
+	private boolean visible = true;
+	private Rectangle viewport;
+
+	// Cached world transform, stale if transformDirty (and then so are all descendants)
+	private final AffineTransform worldTransform;
+	private boolean transformDirty = true;
+
+	// Cached bounds of this subtree in world space, stale if boundsDirty (and then
+	// so are all ancestors)
+	private final Rectangle2D.Double bounds;
+	private boolean hasBounds;
+	private boolean unbounded;
+	private boolean boundsDirty = true;
+
+	// Scratch space so drawing and hit testing don't allocate
+	private final AffineTransform drawTransform;
+	private final Point2D.Double scratchPoint;
+	private final double[] corners;
+
+	/**
+	 * Creates a new node with no content, for grouping other nodes
+	 */
+	public PhineasSceneNode()
+	{
+		this(null, PhineasDrawable.DEFAULT_DEPTH);
+	}
+
+	/**
+	 * Creates a new node
+	 * @param newContent The drawable to draw at this node (in its coordinate
+	 *                   space) or null for none
+	 */
+	public PhineasSceneNode(PhineasDrawable newContent)
+	{
+		this(newContent, PhineasDrawable.DEFAULT_DEPTH);
+	}
+
+	/**
+	 * Creates a new node
+	 * @param newContent The drawable to draw at this node (in its coordinate
+	 *                   space) or null for none
+	 * @param newDepth The depth to draw the tree at if this node is its root
+	 */
+	public PhineasSceneNode(PhineasDrawable newContent, int newDepth)
+	{
+		content = newContent;
+		depth = newDepth;
+		children = new ArrayList<PhineasSceneNode>();
+		worldTransform = new AffineTransform();
+		bounds = new Rectangle2D.Double();
+		drawTransform = new AffineTransform();
+		scratchPoint = new Point2D.Double();
+		corners = new double[8];
+	}
+
+	/**
+	 * Attach a node under this one, drawn after (on top of) the children
+	 * already here. Detaches it from its old parent first.
+	 * @param child The node to attach
+	 */
+	public void addChild(PhineasSceneNode child)
+	{
+		for(PhineasSceneNode ancestor = this; ancestor != null; ancestor = ancestor.parent)
+		{
+			if(ancestor == child)
+				throw new IllegalArgumentException("A node can't be its own descendant");
+		}
+
+		if(child.parent != null)
+			child.parent.removeChild(child);
+		children.add(child);
+		child.parent = this;
+		child.invalidateTransform();
+	}
+
+	/**
+	 * Detach a node from under this one
+	 * @param child The node to detach
+	 */
+	public void removeChild(PhineasSceneNode child)
+	{
+		if(!children.remove(child))
+			return;
+		child.parent = null;
+		child.invalidateTransform();
+		invalidateBounds();
+	}
+
+	/**
+	 * Get the nodes attached under this one
+	 * @return Read only list of children in drawing order
+	 */
+	public List<PhineasSceneNode> getChildren()
+	{
+		return Collections.unmodifiableList(children);
+	}
+
+	/**
+	 * Get the node this one is attached under
+	 * @return Parent node or null if this is a root
+	 */
+	public PhineasSceneNode getParent()
+	{
+		return parent;
+	}
+
+	/**
+	 * Get what is drawn at this node
+	 * @return Content drawable or null
+	 */
+	public PhineasDrawable getContent()
+	{
+		return content;
+	}
+
+	@Override
+	public void setX(int newX)
+	{
+		x = newX;
+		invalidateTransform();
+	}
+
+	@Override
+	public void setY(int newY)
+	{
+		y = newY;
+		invalidateTransform();
+	}
+
+	/**
+	 * Move this node relative to its parent
+	 * @param newX The new x position in the parent's coordinate space
+	 * @param newY The new y position in the parent's coordinate space
+	 */
+	public void setPosition(int newX, int newY)
+	{
+		x = newX;
+		y = newY;
+		invalidateTransform();
+	}
+
+	@Override
+	public int getX()
+	{
+		return x;
+	}
+
+	@Override
+	public int getY()
+	{
+		return y;
+	}
+
+	/**
+	 * Rotate this node (and its subtree) about its origin
+	 * @param newRotation Clockwise rotation relative to the parent in radians
+	 */
+	public void setRotation(double newRotation)
+	{
+		rotation = newRotation;
+		invalidateTransform();
+	}
+
+	/**
+	 * Get this node's rotation
+	 * @return Clockwise rotation relative to the parent in radians
+	 */
+	public double getRotation()
+	{
+		return rotation;
+	}
+
+	/**
+	 * Scale this node (and its subtree) about its origin
+	 * @param newScaleX Horizontal scale relative to the parent
+	 * @param newScaleY Vertical scale relative to the parent
+	 */
+	public void setScale(double newScaleX, double newScaleY)
+	{
+		scaleX = newScaleX;
+		scaleY = newScaleY;
+		invalidateTransform();
+	}
+
+	/**
+	 * Get this node's horizontal scale
+	 * @return Horizontal scale relative to the parent
+	 */
+	public double getScaleX()
+	{
+		return scaleX;
+	}
+
+	/**
+	 * Get this node's vertical scale
+	 * @return Vertical scale relative to the parent
+	 */
+	public double getScaleY()
+	{
+		return scaleY;
+	}
+
+	/**
+	 * Show or hide this node and its subtree
+	 * @param newVisible If false, the subtree is neither drawn nor hit tested
+	 */
+	public void setVisible(boolean newVisible)
+	{
+		visible = newVisible;
+	}
+
+	/**
+	 * Determine if this node and its subtree are shown
+	 * @return true if drawn and hit tested
+	 */
+	public boolean isVisible()
+	{
+		return visible;
+	}
+
+	/**
+	 * Limit drawing to the subtrees inside an area, for when the graphics are
+	 * not clipped to the screen. Only used when this node is the root.
+	 * @param newViewport The visible area in world space or null to use the
+	 *                    graphics clip (with neither, nothing is culled)
+	 */
+	public void setViewport(Rectangle newViewport)
+	{
+		viewport = newViewport == null ? null : new Rectangle(newViewport);
+	}
+
+	/**
+	 * Get the transform from this node's coordinate space to the world's
+	 * @return Copy of the cached world transform
+	 */
+	public AffineTransform getWorldTransform()
+	{
+		updateTransform();
+		return new AffineTransform(worldTransform);
+	}
+
+	/**
+	 * Get the box around everything this subtree draws
+	 * @return World space bounds or null if nothing in the subtree has bounds
+	 */
+	public Rectangle2D getBounds()
+	{
+		updateBounds();
+		return hasBounds ? (Rectangle2D)bounds.clone() : null;
+	}
+
+	/**
+	 * Let this node know its content moved or changed size within the node,
+	 * which it has no way to notice by itself
+	 */
+	public void invalidateBounds()
+	{
+		if(boundsDirty)
+			return;
+		boundsDirty = true;
+		if(parent != null)
+			parent.invalidateBounds();
+	}
+
+	/**
+	 * Find the topmost node in this subtree whose content is under a point
+	 * @param pointX The x position of the point in world space
+	 * @param pointY The y position of the point in world space
+	 * @return The node hit or null if none (only PhineasBoundable content can be hit)
+	 */
+	public PhineasSceneNode hitTest(double pointX, double pointY)
+	{
+		PhineasSceneNode hit;
+		PhineasBoundable box;
+
+		if(!visible)
+			return null;
+
+		updateBounds();
+		if(!unbounded && (!hasBounds || !bounds.contains(pointX, pointY)))
+			return null;
+
+		// Later children are drawn on top so get the first chance
+		for(int i = children.size() - 1; i >= 0; i--)
+		{
+			hit = children.get(i).hitTest(pointX, pointY);
+			if(hit != null)
+				return hit;
+		}
+
+		if(!(content instanceof PhineasBoundable) || GameModelManager.isDormant(content))
+			return null;
+
+		// Test in the content's own space so rotated content is hit exactly
+		scratchPoint.setLocation(pointX, pointY);
+		try
+		{
+			worldTransform.inverseTransform(scratchPoint, scratchPoint);
+		}
+		catch(NoninvertibleTransformException e)
+		{
+			return null;
+		}
+
+		box = (PhineasBoundable)content;
+		if(scratchPoint.x >= box.getX() && scratchPoint.x <= box.getX() + box.getWidth()
+				&& scratchPoint.y >= box.getY() && scratchPoint.y <= box.getY() + box.getHeight())
+			return this;
+		return null;
+	}
+
+	@Override
+	public void draw(Graphics2D target)
+	{
+		AffineTransform base = target.getTransform();
+		drawTree(target, base, viewport != null ? viewport : target.getClipBounds());
+		target.setTransform(base);
+	}
+
+	@Override
+	public int getDepth()
+	{
+		return depth;
+	}
+
+	/**
+	 * Draw this node's content then its children, skipping the subtree if it
+	 * is outside the clip
+	 */
+	private void drawTree(Graphics2D target, AffineTransform base, Rectangle clip)
+	{
+		if(!visible)
+			return;
+
+		updateBounds();
+		if(clip != null && !unbounded && (!hasBounds || !bounds.intersects(clip)))
+			return;
+
+		if(content != null && !GameModelManager.isDormant(content))
+		{
+			drawTransform.setTransform(base);
+			drawTransform.concatenate(worldTransform);
+			target.setTransform(drawTransform);
+			content.draw(target);
+		}
+
+		for(int i = 0; i < children.size(); i++)
+			children.get(i).drawTree(target, base, clip);
+	}
+
+	/**
+	 * Mark this subtree's transforms stale and the bounds up to the root with them
+	 */
+	private void invalidateTransform()
+	{
+		markTransformDirty();
+		if(parent != null)
+			parent.invalidateBounds();
+	}
+
+	private void markTransformDirty()
+	{
+		if(transformDirty)
+			return;
+		transformDirty = true;
+		boundsDirty = true;
+		for(int i = 0; i < children.size(); i++)
+			children.get(i).markTransformDirty();
+	}
+
+	/**
+	 * Recompute the world transform if it is stale
+	 */
+	private void updateTransform()
+	{
+		if(!transformDirty)
+			return;
+
+		if(parent != null)
+		{
+			parent.updateTransform();
+			worldTransform.setTransform(parent.worldTransform);
+		}
+		else
+			worldTransform.setToIdentity();
+
+		worldTransform.translate(x, y);
+		worldTransform.rotate(rotation);
+		worldTransform.scale(scaleX, scaleY);
+		transformDirty = false;
+	}
+
+	/**
+	 * Recompute the bounds of this subtree if they are stale
+	 */
+	private void updateBounds()
+	{
+		PhineasSceneNode child;
+		PhineasBoundable box;
+
+		if(!boundsDirty)
+			return;
+
+		updateTransform();
+		hasBounds = false;
+		unbounded = false;
+
+		if(content instanceof PhineasBoundable)
+		{
+			box = (PhineasBoundable)content;
+			corners[0] = box.getX();
+			corners[1] = box.getY();
+			corners[2] = box.getX() + box.getWidth();
+			corners[3] = box.getY();
+			corners[4] = box.getX();
+			corners[5] = box.getY() + box.getHeight();
+			corners[6] = corners[2];
+			corners[7] = corners[5];
+			worldTransform.transform(corners, 0, corners, 0, 4);
+
+			double minX = Math.min(Math.min(corners[0], corners[2]), Math.min(corners[4], corners[6]));
+			double minY = Math.min(Math.min(corners[1], corners[3]), Math.min(corners[5], corners[7]));
+			double maxX = Math.max(Math.max(corners[0], corners[2]), Math.max(corners[4], corners[6]));
+			double maxY = Math.max(Math.max(corners[1], corners[3]), Math.max(corners[5], corners[7]));
+			bounds.setRect(minX, minY, maxX - minX, maxY - minY);
+			hasBounds = true;
+		}
+		else if(content != null)
+			unbounded = true;
+
+		for(int i = 0; i < children.size(); i++)
+		{
+			child = children.get(i);
+			child.updateBounds();
+			unbounded |= child.unbounded;
+			if(!child.hasBounds)
+				continue;
+			if(hasBounds)
+				Rectangle2D.union(bounds, child.bounds, bounds);
+			else
+				bounds.setRect(child.bounds);
+			hasBounds = true;
+		}
+
+		boundsDirty = false;
+	}
+}
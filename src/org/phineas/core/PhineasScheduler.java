@@ -0,0 +1,188 @@
+package org.phineas.core;
+
+/**
+ * Scheduler that calls PhineasTimerListeners after a delay in game time,
+ * once or repeatedly. Timers are kept in a hierarchical timing wheel: each
+ * level is a ring of slots covering 64 times the span of the level below, and
+ * timers move down a level as their deadline gets close. Scheduling and
+ * cancelling are constant time and a step only touches the timers that are
+ * due, so thousands of pending timers cost nothing per frame. Each PhineasWorld
+ * has its own scheduler running on its own clock. Like entities, timers should
+ * only be scheduled and cancelled from their world's game loop.
+ * @author Sam Pottinger
+ */
+public class PhineasScheduler
+{
+	private static final int SLOT_BITS = 6;
+	private static final int SLOTS = 1 << SLOT_BITS;
+	private static final int SLOT_MASK = SLOTS - 1;
+	private static final int LEVELS = 6;
+
+	// Timers further out wait in the top level and are re-filed as it turns
+	private static final long MAX_SPAN = 1L << (SLOT_BITS * LEVELS);
+
+	private static final PhineasScheduler instance = new PhineasScheduler();
+
+	private final PhineasTimer[][] wheel;
+	private long currentTick;
+	private int pendingCount;
+
+	/**
+	 * Creates a new empty scheduler, like for a PhineasWorld other than the
+	 * default one
+	 */
+	PhineasScheduler()
+	{
+		wheel = new PhineasTimer[LEVELS][SLOTS];
+	}
+
+	/**
+	 * Get the scheduler of the default world
+	 * @return Shared instance of PhineasScheduler
+	 */
+	public static PhineasScheduler getInstance()
+	{
+		return instance;
+	}
+
+	/**
+	 * Call a listener once after a delay
+	 * @param delayMillis Milliseconds of game time to wait (at least one step)
+	 * @param listener The listener to call
+	 * @return Handle that can cancel the timer
+	 */
+	public PhineasTimer schedule(long delayMillis, PhineasTimerListener listener)
+	{
+		PhineasTimer timer = new PhineasTimer(this, listener, currentTick + Math.max(1, delayMillis), 0);
+		insert(timer);
+		return timer;
+	}
+
+	/**
+	 * Call a listener repeatedly
+	 * @param delayMillis Milliseconds of game time before the first call
+	 * @param periodMillis Milliseconds of game time between calls
+	 * @param listener The listener to call
+	 * @return Handle that can cancel the timer
+	 */
+	public PhineasTimer scheduleRepeating(long delayMillis, long periodMillis, PhineasTimerListener listener)
+	{
+		if(periodMillis <= 0)
+			throw new IllegalArgumentException("Period must be positive");
+
+		PhineasTimer timer = new PhineasTimer(this, listener, currentTick + Math.max(1, delayMillis),
+				periodMillis);
+		insert(timer);
+		return timer;
+	}
+
+	/**
+	 * Stop a timer from going off. Does nothing if it already has (and is not
+	 * repeating) or was cancelled before.
+	 * @param timer The timer to cancel
+	 */
+	public void cancel(PhineasTimer timer)
+	{
+		if(timer.isScheduled())
+			unlink(timer);
+	}
+
+	/**
+	 * Get the number of timers waiting to go off
+	 * @return Number of scheduled timers
+	 */
+	public int getPendingCount()
+	{
+		return pendingCount;
+	}
+
+	/**
+	 * Move the wheel forward to the given game time, calling every timer that
+	 * comes due on the way. Called by the game loop each step.
+	 * @param gameTime The current game time in milliseconds
+	 */
+	void advance(long gameTime)
+	{
+		PhineasTimer timer;
+		int slot;
+
+		while(currentTick < gameTime)
+		{
+			// Nothing to visit on the way
+			if(pendingCount == 0)
+			{
+				currentTick = gameTime;
+				return;
+			}
+
+			currentTick++;
+
+			// As each level wraps, bring the next slot of the level above down
+			for(int level = 1; level < LEVELS; level++)
+			{
+				if((currentTick & ((1L << (SLOT_BITS * level)) - 1)) != 0)
+					break;
+				slot = (int)((currentTick >>> (SLOT_BITS * level)) & SLOT_MASK);
+				while((timer = wheel[level][slot]) != null)
+				{
+					unlink(timer);
+					insert(timer);
+				}
+			}
+
+			slot = (int)(currentTick & SLOT_MASK);
+			while((timer = wheel[0][slot]) != null)
+			{
+				unlink(timer);
+				if(timer.period > 0)
+				{
+					timer.deadline += timer.period;
+					insert(timer);
+				}
+				timer.listener.onTimer(timer);
+			}
+		}
+	}
+
+	/**
+	 * File a timer in the slot its deadline falls in
+	 */
+	private void insert(PhineasTimer timer)
+	{
+		long effective = Math.min(timer.deadline, currentTick + MAX_SPAN - 1);
+		long delta = effective - currentTick;
+		int level = 0;
+		int slot;
+
+		while(level < LEVELS - 1 && delta >= 1L << (SLOT_BITS * (level + 1)))
+			level++;
+		slot = (int)((effective >>> (SLOT_BITS * level)) & SLOT_MASK);
+
+		timer.level = level;
+		timer.slot = slot;
+		timer.previous = null;
+		timer.next = wheel[level][slot];
+		if(timer.next != null)
+			timer.next.previous = timer;
+		wheel[level][slot] = timer;
+		pendingCount++;
+	}
+
+	/**
+	 * Take a timer out of its slot
+	 */
+	private void unlink(PhineasTimer timer)
+	{
+		if(timer.previous != null)
+			timer.previous.next = timer.next;
+		else
+			wheel[timer.level][timer.slot] = timer.next;
+		if(timer.next != null)
+			timer.next.previous = timer.previous;
+
+		timer.previous = null;
+		timer.next = null;
+		timer.level = -1;
+		pendingCount--;
+	}
+}
@@ -0,0 +1,136 @@
+package org.phineas.core;
+
+import java.util.concurrent.Semaphore;
+
+/**
+ * Behavior written as straight line code ("walk, wait 2 seconds, shoot")
+ * instead of a state machine in onStep. Each script runs on its own thread
+ * (a virtual thread where the JVM supports them) but only ever runs while the
+ * game loop waits for it, so scripts can touch game state like any step
+ * listener. A waiting script costs nothing until it is due.
+ * @author Sam Pottinger
+ */
+public abstract class PhineasScript
+{
+	// Handoff between the game loop and this script's thread
+	final Semaphore resumeSignal = new Semaphore(0);
+	final Semaphore yieldSignal = new Semaphore(0);
+
+	// Only touched by the game loop, or by the script while the loop waits on it
+	long wakeTime;
+	long sequence;
+	Thread thread;
+	volatile PhineasScriptRunner runner;
+
+	volatile boolean started;
+	volatile boolean cancelled;
+	volatile boolean finished;
+
+	/**
+	 * The script's behavior. Runs during the step after start is called and
+	 * may pause with nextStep and waitMillis.
+	 * @throws InterruptedException Thrown out of nextStep and waitMillis if the
+	 *                              script is cancelled (let it propagate)
+	 */
+	protected abstract void run() throws InterruptedException;
+
+	/**
+	 * Start running this script on the next step of the current world (the
+	 * one being stepped on this thread, or the default world outside of a
+	 * step; use PhineasWorld.getScriptRunner().start to pick another)
+	 */
+	public void start()
+	{
+		PhineasWorld.getCurrent().getScriptRunner().start(this);
+	}
+
+	/**
+	 * Stop this script on the next step. Its current wait throws an
+	 * InterruptedException so it can clean up.
+	 */
+	public void cancel()
+	{
+		PhineasScriptRunner target = runner;
+		(target == null ? PhineasScriptRunner.getInstance() : target).cancel(this);
+	}
+
+	/**
+	 * Determine if this script has returned, failed or been cancelled
+	 * @return true if this script will not run any more
+	 */
+	public boolean isFinished()
+	{
+		return finished;
+	}
+
+	/**
+	 * Pause until the next step of the game loop
+	 * @throws InterruptedException Thrown if the script was cancelled
+	 */
+	protected final void nextStep() throws InterruptedException
+	{
+		suspend(getGameTime());
+	}
+
+	/**
+	 * Pause for a length of game time
+	 * @param milliseconds How long to wait (the script resumes on the first
+	 *                     step at least this long from now)
+	 * @throws InterruptedException Thrown if the script was cancelled
+	 */
+	protected final void waitMillis(long milliseconds) throws InterruptedException
+	{
+		suspend(getGameTime() + Math.max(0, milliseconds));
+	}
+
+	/**
+	 * Get the game's clock as of the step this script is running in
+	 * @return Milliseconds of game time
+	 */
+	protected final long getGameTime()
+	{
+		return runner.getCurrentTime();
+	}
+
+	/**
+	 * Thread body: waits for the loop to hand over control the first time
+	 */
+	void body()
+	{
+		try
+		{
+			resumeSignal.acquire();
+			PhineasWorld.enter(runner.world);
+			if(!cancelled)
+				run();
+		}
+		catch(InterruptedException e)
+		{
+			// Cancelled
+		}
+		catch(RuntimeException e)
+		{
+			e.printStackTrace();
+		}
+		finally
+		{
+			finished = true;
+			yieldSignal.release();
+		}
+	}
+
+	/**
+	 * Hand control back to the game loop until the given game time
+	 */
+	private void suspend(long newWakeTime) throws InterruptedException
+	{
+		if(Thread.currentThread() != thread)
+			throw new IllegalStateException("Scripts can only wait from their own run method");
+
+		wakeTime = newWakeTime;
+		yieldSignal.release();
+		resumeSignal.acquire();
+		if(cancelled)
+			throw new InterruptedException("Script cancelled");
+	}
+}
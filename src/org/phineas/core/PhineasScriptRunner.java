@@ -0,0 +1,232 @@
+package org.phineas.core;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Resumes PhineasScripts from the game loop of a PhineasWorld. Waiting scripts
+ * sit in a queue ordered by when they are due, so each step only wakes the
+ * scripts whose time has come and idle scripts are never polled. Control is
+ * handed to one script at a time and the loop waits for it to pause again.
+ * @author Sam Pottinger
+ */
+public class PhineasScriptRunner
+{
+	// Platform threads are only used where virtual threads are unavailable
+	private static final long PLATFORM_STACK_SIZE = 256 * 1024;
+
+	private static final PhineasScriptRunner instance = new PhineasScriptRunner();
+
+	private final PriorityQueue<PhineasScript> waiting;
+	private final ConcurrentLinkedQueue<PhineasScript> toStart;
+	private final ConcurrentLinkedQueue<PhineasScript> toCancel;
+	private final List<PhineasScript> due;
+	private volatile long currentTime;
+	private long nextSequence;
+
+	// The world this runner belongs to, made current on its scripts' threads
+	volatile PhineasWorld world;
+
+	// Thread.ofVirtual and friends, looked up and tried once since they only
+	// exist (or only work without preview flags) on newer JVMs. Null if not.
+	private static final Method ofVirtual;
+	private static final Method builderName;
+	private static final Method builderUnstarted;
+
+	static
+	{
+		Method newOfVirtual = null;
+		Method newBuilderName = null;
+		Method newBuilderUnstarted = null;
+		try
+		{
+			Class<?> builder = Class.forName("java.lang.Thread$Builder");
+			newOfVirtual = Thread.class.getMethod("ofVirtual");
+			newBuilderName = builder.getMethod("name", String.class);
+			newBuilderUnstarted = builder.getMethod("unstarted", Runnable.class);
+
+			// Preview builds have the methods but throw unless preview is on
+			Object trial = newBuilderName.invoke(newOfVirtual.invoke(null), "PhineasScript-probe");
+			newBuilderUnstarted.invoke(trial, new Runnable()
+			{
+				@Override
+				public void run() {}
+			});
+		}
+		catch(ReflectiveOperationException e)
+		{
+			newOfVirtual = null;
+		}
+		catch(RuntimeException e)
+		{
+			newOfVirtual = null;
+		}
+		ofVirtual = newOfVirtual;
+		builderName = newBuilderName;
+		builderUnstarted = newBuilderUnstarted;
+	}
+
+	/**
+	 * Creates a new runner with no scripts, like for a PhineasWorld other than
+	 * the default one
+	 */
+	PhineasScriptRunner()
+	{
+		waiting = new PriorityQueue<PhineasScript>(64, new Comparator<PhineasScript>()
+		{
+			@Override
+			public int compare(PhineasScript a, PhineasScript b)
+			{
+				if(a.wakeTime != b.wakeTime)
+					return a.wakeTime < b.wakeTime ? -1 : 1;
+				return Long.compare(a.sequence, b.sequence);
+			}
+		});
+		toStart = new ConcurrentLinkedQueue<PhineasScript>();
+		toCancel = new ConcurrentLinkedQueue<PhineasScript>();
+		due = new ArrayList<PhineasScript>();
+	}
+
+	/**
+	 * Get the script runner of the default world
+	 * @return Shared instance of PhineasScriptRunner
+	 */
+	public static PhineasScriptRunner getInstance()
+	{
+		return instance;
+	}
+
+	/**
+	 * Run a script from the next step on. Safe to call from any thread.
+	 * @param script The script to start (each script can only be started once)
+	 */
+	public void start(PhineasScript script)
+	{
+		synchronized(script)
+		{
+			if(script.started)
+				throw new IllegalStateException("Script already started");
+			script.started = true;
+			script.runner = this;
+		}
+		toStart.add(script);
+	}
+
+	/**
+	 * Stop a script on the next step. Safe to call from any thread.
+	 * @param script The script to stop
+	 */
+	public void cancel(PhineasScript script)
+	{
+		if(script.cancelled)
+			return;
+		script.cancelled = true;
+		toCancel.add(script);
+	}
+
+	/**
+	 * Get the game time of the step scripts are being resumed in
+	 * @return Milliseconds of game time
+	 */
+	public long getCurrentTime()
+	{
+		return currentTime;
+	}
+
+	/**
+	 * Get the number of scripts that are waiting to be resumed
+	 * @return Number of started scripts that have not finished
+	 */
+	public int getWaitingCount()
+	{
+		return waiting.size();
+	}
+
+	/**
+	 * Start new scripts and resume every script due at or before the given time.
+	 * Called by the game loop each step.
+	 * @param gameTime The current game time in milliseconds
+	 */
+	void resumeDue(long gameTime)
+	{
+		PhineasScript script;
+
+		currentTime = gameTime;
+
+		while((script = toStart.poll()) != null)
+		{
+			script.thread = createThread(script);
+			script.thread.start();
+			script.wakeTime = gameTime;
+			script.sequence = nextSequence++;
+			waiting.add(script);
+		}
+
+		// Cancelled scripts are due now so they can unwind
+		while((script = toCancel.poll()) != null)
+		{
+			if(!script.finished && waiting.remove(script))
+			{
+				script.wakeTime = gameTime;
+				waiting.add(script);
+			}
+		}
+
+		// Take everything due first so scripts that wait for the next step are
+		// not resumed twice in this one
+		while(!waiting.isEmpty() && waiting.peek().wakeTime <= gameTime)
+			due.add(waiting.poll());
+
+		for(int i = 0; i < due.size(); i++)
+		{
+			script = due.get(i);
+			script.resumeSignal.release();
+			script.yieldSignal.acquireUninterruptibly();
+			if(!script.finished)
+			{
+				script.sequence = nextSequence++;
+				waiting.add(script);
+			}
+			else
+				script.thread = null;
+		}
+		due.clear();
+	}
+
+	/**
+	 * Create the thread a script runs on, virtual if this JVM supports it
+	 */
+	private Thread createThread(final PhineasScript script)
+	{
+		Runnable body = new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				script.body();
+			}
+		};
+		String name = "PhineasScript-" + script.getClass().getSimpleName();
+
+		if(ofVirtual != null)
+		{
+			try
+			{
+				Object builder = builderName.invoke(ofVirtual.invoke(null), name);
+				return (Thread)builderUnstarted.invoke(builder, body);
+			}
+			catch(ReflectiveOperationException e)
+			{
+				// Worked when tried at class init; fall back to a platform thread
+			}
+		}
+
+		Thread thread = new Thread(null, body, name, PLATFORM_STACK_SIZE);
+		thread.setDaemon(true);
+		return thread;
+	}
+}
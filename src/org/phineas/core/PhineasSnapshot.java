@@ -0,0 +1,122 @@
+package org.phineas.core;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Saved state of a world's entities in a compact binary format, held in a
+ * direct buffer so it can go to and from a file or socket without being
+ * copied onto the heap. Created by PhineasSnapshotManager.
+ * @author Sam Pottinger
+ */
+public class PhineasSnapshot
+{
+	static final int MAGIC = 0x5048534E;
+	static final int VERSION = 1;
+	static final int HEADER_SIZE = 16;
+	
+	// Largest payload readFrom will allocate for, so a damaged length can't
+	// exhaust direct memory
+	static final int MAX_PAYLOAD_SIZE = 256 * 1024 * 1024;
+	
+	// Header then payload, from 0 to the limit
+	ByteBuffer buffer;
+	
+	PhineasSnapshot(ByteBuffer newBuffer)
+	{
+		buffer = newBuffer;
+	}
+	
+	/**
+	 * Get how big this snapshot is
+	 * @return Number of bytes writeTo writes
+	 */
+	public int getSize()
+	{
+		return buffer.limit();
+	}
+	
+	/**
+	 * Get how many entities this snapshot holds
+	 * @return Number of saved entities
+	 */
+	public int getEntityCount()
+	{
+		return buffer.getInt(8);
+	}
+	
+	/**
+	 * Write this snapshot out, like to a FileChannel for an autosave
+	 * @param channel The channel to write to
+	 * @throws IOException Thrown if the channel fails
+	 */
+	public void writeTo(WritableByteChannel channel) throws IOException
+	{
+		ByteBuffer view = buffer.duplicate();
+		view.rewind();
+		while(view.hasRemaining())
+			channel.write(view);
+	}
+	
+	/**
+	 * Read a snapshot previously written by writeTo
+	 * @param channel The channel to read from
+	 * @return The snapshot read
+	 * @throws IOException Thrown if the channel fails or ends early
+	 * @throws PhineasException Thrown if the data is not a snapshot this version
+	 *                          can read or its length is impossible
+	 */
+	public static PhineasSnapshot readFrom(ReadableByteChannel channel) throws IOException, PhineasException
+	{
+		ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+		ByteBuffer buffer;
+		int payloadSize;
+		
+		readFully(channel, header);
+		header.flip();
+		checkHeader(header);
+		
+		payloadSize = header.getInt(12);
+		if(payloadSize < 0 || payloadSize > MAX_PAYLOAD_SIZE)
+			throw new PhineasException("Invalid snapshot length " + payloadSize);
+		if(channel instanceof SeekableByteChannel)
+		{
+			// Like a FileChannel, where a truncated file can be caught up front
+			SeekableByteChannel seekable = (SeekableByteChannel)channel;
+			if(payloadSize > seekable.size() - seekable.position())
+				throw new PhineasException("Snapshot length " + payloadSize + " is past the end of the channel");
+		}
+		
+		buffer = ByteBuffer.allocateDirect(HEADER_SIZE + payloadSize);
+		buffer.put(header);
+		readFully(channel, buffer);
+		buffer.flip();
+		return new PhineasSnapshot(buffer);
+	}
+	
+	/**
+	 * Make sure a buffer starts with a snapshot header this version understands
+	 * @param source Buffer positioned at the header
+	 * @throws PhineasException Thrown if the header is wrong
+	 */
+	static void checkHeader(ByteBuffer source) throws PhineasException
+	{
+		if(source.remaining() < HEADER_SIZE || source.getInt(source.position()) != MAGIC)
+			throw new PhineasException("Not a snapshot");
+		if(source.getInt(source.position() + 4) != VERSION)
+			throw new PhineasException("Unsupported snapshot version " + source.getInt(source.position() + 4));
+	}
+	
+	private static void readFully(ReadableByteChannel channel, ByteBuffer target) throws IOException
+	{
+		while(target.hasRemaining())
+		{
+			if(channel.read(target) < 0)
+				throw new EOFException("Snapshot ended early");
+		}
+	}
+}
@@ -0,0 +1,28 @@
+package org.phineas.core;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Interface for objects that save and load one class of entity for
+ * PhineasSnapshotManager. Codecs are written by hand instead of using
+ * reflection, so they only write what matters and stay fast.
+ * @author Sam Pottinger
+ * @param <T> The class of entity this codec handles
+ */
+public interface PhineasSnapshotCodec<T>
+{
+	/**
+	 * Write an entity's position and state
+	 * @param entity The entity to save
+	 * @param target The buffer to write to (may throw BufferOverflowException,
+	 *               in which case the snapshot is retried with a bigger buffer)
+	 */
+	public void write(T entity, ByteBuffer target);
+	
+	/**
+	 * Create an entity from what write wrote
+	 * @param source The buffer to read from, positioned where write started
+	 * @return New entity in the saved state
+	 */
+	public T read(ByteBuffer source);
+}
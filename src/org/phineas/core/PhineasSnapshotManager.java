@@ -0,0 +1,212 @@
+package org.phineas.core;
+
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Saves and restores the entities of a world for autosaves and rollback.
+ * Each class of entity to save gets a PhineasSnapshotCodec registered under
+ * a number that identifies it in the saved data; entities of other classes
+ * (like the performance overlay) are left out of snapshots and left alone by
+ * restores. Snapshots cover entities only, not the clock, timers or scripts.
+ * @author Sam Pottinger
+ */
+public class PhineasSnapshotManager
+{
+	private static final int INITIAL_CAPACITY = 64 * 1024;
+
+	private final PhineasWorld world;
+	private final Map<Class<?>, Registration> codecsByClass;
+	private final Map<Integer, Registration> codecsById;
+	private final List<Object> entities;
+	private final Set<Object> seen;
+	private int lastSize;
+
+	/**
+	 * Codec and the id it is saved under
+	 */
+	private static class Registration
+	{
+		private final int id;
+		private final PhineasSnapshotCodec<Object> codec;
+
+		public Registration(int newId, PhineasSnapshotCodec<Object> newCodec)
+		{
+			id = newId;
+			codec = newCodec;
+		}
+	}
+
+	/**
+	 * Creates a new manager for the default world with no codecs
+	 */
+	public PhineasSnapshotManager()
+	{
+		this(PhineasWorld.getDefault());
+	}
+
+	/**
+	 * Creates a new manager with no codecs
+	 * @param newWorld The world to save and restore
+	 */
+	public PhineasSnapshotManager(PhineasWorld newWorld)
+	{
+		world = newWorld;
+		codecsByClass = new HashMap<Class<?>, Registration>();
+		codecsById = new HashMap<Integer, Registration>();
+		entities = new ArrayList<Object>();
+		seen = Collections.newSetFromMap(new IdentityHashMap<Object, Boolean>());
+	}
+
+	/**
+	 * Save entities of a class with the given codec
+	 * @param <T> The class of entity
+	 * @param id Number identifying the class in saved data, which must not
+	 *           change between versions of the game that share saves
+	 * @param type The exact class of entity (subclasses need their own codec)
+	 * @param codec The codec that saves and loads the class
+	 */
+	@SuppressWarnings("unchecked")
+	public <T> void registerCodec(int id, Class<T> type, PhineasSnapshotCodec<T> codec)
+	{
+		if(codecsById.containsKey(id))
+			throw new IllegalArgumentException("Codec id " + id + " is already registered");
+		if(codecsByClass.containsKey(type))
+			throw new IllegalArgumentException("A codec for " + type.getName() + " is already registered");
+
+		Registration registration = new Registration(id, (PhineasSnapshotCodec<Object>)codec);
+		codecsByClass.put(type, registration);
+		codecsById.put(id, registration);
+	}
+
+	/**
+	 * Save every entity with a codec into a new snapshot. Call from the game
+	 * loop (like a step listener or timer) so nothing moves while it is saved.
+	 * @return The new snapshot
+	 */
+	public PhineasSnapshot capture()
+	{
+		return capture(null);
+	}
+
+	/**
+	 * Save every entity with a codec, reusing an old snapshot's buffer if it
+	 * is big enough so regular autosaves don't allocate. Call from the game
+	 * loop (like a step listener or timer) so nothing moves while it is saved.
+	 * @param reuse Snapshot to overwrite or null to create a new one
+	 * @return The snapshot written to (reuse if not null)
+	 */
+	public PhineasSnapshot capture(PhineasSnapshot reuse)
+	{
+		ByteBuffer buffer;
+
+		entities.clear();
+		seen.clear();
+		world.getModelManager().collectEntities(entities, seen);
+		seen.clear();
+
+		if(reuse != null)
+			buffer = reuse.buffer;
+		else
+			buffer = ByteBuffer.allocateDirect(Math.max(INITIAL_CAPACITY, lastSize + lastSize / 4));
+
+		// Grow and start over if the entities don't fit
+		while(true)
+		{
+			buffer.clear();
+			try
+			{
+				writeEntities(buffer);
+				break;
+			}
+			catch(BufferOverflowException e)
+			{
+				buffer = ByteBuffer.allocateDirect(buffer.capacity() * 2);
+			}
+		}
+		buffer.flip();
+		entities.clear();
+		lastSize = buffer.limit();
+
+		if(reuse == null)
+			return new PhineasSnapshot(buffer);
+		reuse.buffer = buffer;
+		return reuse;
+	}
+
+	/**
+	 * Replace every entity with a codec by the entities in a snapshot. They are
+	 * decoded now and swapped in all at once on the world's next step, taking
+	 * the old ones out in one pass per registry. References to the old
+	 * entities are not updated.
+	 * @param snapshot The snapshot to restore
+	 * @throws PhineasException Thrown if the snapshot is damaged or uses a codec
+	 *                          id that is not registered
+	 */
+	public void restore(PhineasSnapshot snapshot) throws PhineasException
+	{
+		ByteBuffer source = snapshot.buffer.duplicate();
+		Registration registration;
+		List<Object> incoming;
+		int count;
+		int id;
+
+		source.rewind();
+		PhineasSnapshot.checkHeader(source);
+		count = source.getInt(8);
+		source.position(PhineasSnapshot.HEADER_SIZE);
+
+		incoming = new ArrayList<Object>(count);
+		try
+		{
+			for(int i = 0; i < count; i++)
+			{
+				id = source.getInt();
+				registration = codecsById.get(id);
+				if(registration == null)
+					throw new PhineasException("No codec registered for id " + id);
+				incoming.add(registration.codec.read(source));
+			}
+		}
+		catch(BufferUnderflowException e)
+		{
+			throw new PhineasException("Snapshot ended early");
+		}
+
+		world.getStager().replaceEntities(new HashSet<Class<?>>(codecsByClass.keySet()), incoming);
+	}
+
+	/**
+	 * Write the header and every collected entity with a codec
+	 */
+	private void writeEntities(ByteBuffer target)
+	{
+		Registration registration;
+		int count = 0;
+
+		target.position(PhineasSnapshot.HEADER_SIZE);
+		for(Object entity : entities)
+		{
+			registration = codecsByClass.get(entity.getClass());
+			if(registration == null)
+				continue;
+			target.putInt(registration.id);
+			registration.codec.write(entity, target);
+			count++;
+		}
+
+		target.putInt(0, PhineasSnapshot.MAGIC);
+		target.putInt(4, PhineasSnapshot.VERSION);
+		target.putInt(8, count);
+		target.putInt(12, target.position() - PhineasSnapshot.HEADER_SIZE);
+	}
+}
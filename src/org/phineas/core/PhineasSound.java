@@ -30,18 +30,38 @@ public class PhineasSound
 
     private String loc;
 
+    private boolean shared;
+
+    private boolean owned;
+
     public PhineasSound(String loc) throws LineUnavailableException, UnsupportedAudioFileException,
         IOException
     {
         this.loc = loc;
-        clip = PhineasSoundLoader.getInstance().loadSound(loc);
+        clip = PhineasSoundLoader.getInstance().acquireSound(loc);
+        shared = true;
     }
 
+    /**
+     * Wraps a clip the caller opened. The caller keeps ownership of the clip,
+     * so release leaves it open.
+     * 
+     * @param loc
+     *        The location the clip was loaded from
+     * @param clip
+     *        The clip to play
+     */
     public PhineasSound(String loc, Clip clip) throws LineUnavailableException,
         UnsupportedAudioFileException, IOException
+    {
+        this(loc, clip, false);
+    }
+
+    private PhineasSound(String loc, Clip clip, boolean owned)
     {
         this.loc = loc;
         this.clip = clip;
+        this.owned = owned;
     }
 
     public void start()
@@ -58,7 +78,7 @@ public class PhineasSound
     {
         try
         {
-            return new PhineasSound(loc, PhineasSoundLoader.getInstance().loadSound(loc, false));
+            return new PhineasSound(loc, PhineasSoundLoader.getInstance().loadSound(loc, false), true);
         } catch (LineUnavailableException e)
         {
             e.printStackTrace();
@@ -125,6 +145,20 @@ public class PhineasSound
         }
     }
 
+    /**
+     * Lets go of this sound's clip. A shared clip becomes available for eviction
+     * from the sound cache while one opened by this sound (like for a clone)
+     * is closed. A clip handed to the constructor is left to its owner. The
+     * sound should not be used afterwards.
+     */
+    public void release()
+    {
+        if (shared)
+            PhineasSoundLoader.getInstance().releaseSound(loc);
+        else if (owned)
+            clip.close();
+    }
+
     /**
      * Has this sound stop and go back to the start of the clip
      */
@@ -0,0 +1,111 @@
+package org.phineas.core;
+
+import java.io.IOException;
+
+import javax.sound.sampled.UnsupportedAudioFileException;
+
+import org.phineas.contrib.PhineasMixer;
+import org.phineas.contrib.PhineasPcmSample;
+import org.phineas.contrib.PhineasSoundLoader;
+
+/**
+ * Short sound that can be played any number of times at once through the shared
+ * software mixer, unlike PhineasSound which needs a Clip per overlapping play
+ * 
+ * @author Sam Pottinger
+ */
+public class PhineasSoundEffect
+{
+    private PhineasPcmSample sample;
+
+    private float volume;
+
+    private float pitch;
+
+    public PhineasSoundEffect(String loc) throws UnsupportedAudioFileException, IOException
+    {
+        sample = PhineasSoundLoader.getInstance().loadSample(loc);
+        volume = 1;
+        pitch = 1;
+    }
+
+    /**
+     * Plays this effect once at its default volume and pitch
+     * 
+     * @return Handle for controlling the playing voice through PhineasMixer or
+     *         -1 if no voice was free
+     */
+    public int play()
+    {
+        return PhineasMixer.getInstance().play(sample, volume, pitch, false);
+    }
+
+    /**
+     * Plays this effect once
+     * 
+     * @param playVolume
+     *        Volume for this play (0 is silent, 1 is full volume)
+     * @param playPitch
+     *        Playback speed multiplier for this play (2 is an octave up)
+     * @return Handle for controlling the playing voice through PhineasMixer or
+     *         -1 if no voice was free
+     */
+    public int play(float playVolume, float playPitch)
+    {
+        return PhineasMixer.getInstance().play(sample, playVolume, playPitch, false);
+    }
+
+    /**
+     * Plays this effect over and over until stopped
+     * 
+     * @return Handle for stopping the voice through PhineasMixer or -1 if no
+     *         voice was free
+     */
+    public int loop()
+    {
+        return PhineasMixer.getInstance().play(sample, volume, pitch, true);
+    }
+
+    /**
+     * Stops a play of this effect
+     * 
+     * @param handle
+     *        The handle returned by play or loop
+     */
+    public void stop(int handle)
+    {
+        PhineasMixer.getInstance().stopVoice(handle);
+    }
+
+    /**
+     * Sets the volume that future plays use by default
+     * 
+     * @param newVolume
+     *        Volume between 0 (silent) and 1 (full volume)
+     */
+    public void setVolume(float newVolume)
+    {
+        volume = newVolume;
+    }
+
+    /**
+     * Sets the pitch that future plays use by default
+     * 
+     * @param newPitch
+     *        Playback speed multiplier (2 is an octave up)
+     */
+    public void setPitch(float newPitch)
+    {
+        pitch = newPitch;
+    }
+
+    /**
+     * Get the decoded audio this effect plays
+     * 
+     * @return Shared sample
+     */
+    public PhineasPcmSample getSample()
+    {
+        return sample;
+    }
+}
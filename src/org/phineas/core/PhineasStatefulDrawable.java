@@ -0,0 +1,24 @@
+package org.phineas.core;
+
+import java.awt.Graphics2D;
+
+/**
+ * Interface for drawables that can split setting up Graphics2D state from the
+ * actual drawing so Phineas can set shared state once for a whole group
+ * @note getBatchKey should return getRenderState()
+ * @author Sam Pottinger
+ */
+public interface PhineasStatefulDrawable extends PhineasBatchable
+{
+	/**
+	 * Get the state this drawable needs the context to be in when drawing
+	 * @return Description of the color, composite, font and image this drawable uses
+	 */
+	public PhineasRenderState getRenderState();
+
+	/**
+	 * Draws this object assuming the context is already in this drawable's render state
+	 * @param target The context to draw on
+	 */
+	public void drawStateless(Graphics2D target);
+}
@@ -0,0 +1,62 @@
+package org.phineas.core;
+
+/**
+ * Handle for a callback scheduled with PhineasScheduler
+ * @author Sam Pottinger
+ */
+public class PhineasTimer
+{
+	final PhineasScheduler scheduler;
+	final PhineasTimerListener listener;
+	final long period;
+
+	// Position in the scheduler's wheel, null slot list links when not scheduled
+	long deadline;
+	int level = -1;
+	int slot;
+	PhineasTimer previous;
+	PhineasTimer next;
+
+	PhineasTimer(PhineasScheduler newScheduler, PhineasTimerListener newListener, long newDeadline, long newPeriod)
+	{
+		scheduler = newScheduler;
+		listener = newListener;
+		deadline = newDeadline;
+		period = newPeriod;
+	}
+
+	/**
+	 * Stop this timer from going off again
+	 */
+	public void cancel()
+	{
+		scheduler.cancel(this);
+	}
+
+	/**
+	 * Determine if this timer will still go off
+	 * @return true if this timer is waiting in the scheduler
+	 */
+	public boolean isScheduled()
+	{
+		return level >= 0;
+	}
+
+	/**
+	 * Get how often this timer repeats
+	 * @return Milliseconds between repeats or 0 for a one shot timer
+	 */
+	public long getPeriod()
+	{
+		return period;
+	}
+
+	/**
+	 * Get the game time this timer is next due at
+	 * @return Milliseconds of game time
+	 */
+	public long getDeadline()
+	{
+		return deadline;
+	}
+}
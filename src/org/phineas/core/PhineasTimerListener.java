@@ -0,0 +1,15 @@
+package org.phineas.core;
+
+/**
+ * Interface for objects that are called back when a PhineasTimer goes off
+ * @author Sam Pottinger
+ */
+public interface PhineasTimerListener {
+	
+	/**
+	 * Method called by the game loop when a timer is due
+	 * @param timer The timer that went off (cancel it to stop a repeating timer)
+	 */
+	public void onTimer(PhineasTimer timer);
+
+}
@@ -0,0 +1,551 @@
+package org.phineas.core;
+
+import java.awt.event.KeyEvent;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Self contained game session with its own entities, staged actions, clock,
+ * timers and scripts. The default world is the one the PhineasGameFacade
+ * shows and steps; other worlds can be swapped onto the screen to switch
+ * scenes without tearing anything down, or stepped headlessly, many at once,
+ * on a shared thread pool (like matches on a server).
+ * @author Sam Pottinger
+ */
+public class PhineasWorld
+{
+	private static final long MILLISECONDS_PER_SECOND = 1000;
+
+	private static PhineasWorld defaultWorld = null;
+	
+	// The world being stepped, drawn or sent input on each thread
+	private static final ThreadLocal<PhineasWorld> current = new ThreadLocal<PhineasWorld>();
+
+	private final GameModelManager modelManager;
+	private final GameEntityActionStager stager;
+	private final PhineasScheduler scheduler;
+	private final PhineasScriptRunner scriptRunner;
+	private volatile long gameTime;
+	private PhineasStepListener[] concurrentListeners = new PhineasStepListener[0];
+	private ScheduledFuture<?> headlessLoop;
+
+	/**
+	 * Steps a range of concurrent step listeners, splitting it in half until
+	 * the pieces are small enough
+	 */
+	private static class ConcurrentStepTask extends RecursiveAction
+	{
+		private static final long serialVersionUID = 1L;
+
+		private final PhineasWorld world;
+		private final PhineasStepListener[] listeners;
+		private final int start;
+		private final int end;
+		private final long milliseconds;
+		private final boolean timed;
+		private final int grain;
+
+		public ConcurrentStepTask(PhineasWorld newWorld, PhineasStepListener[] newListeners, int newStart,
+				int newEnd, long newMilliseconds, boolean newTimed, int newGrain)
+		{
+			world = newWorld;
+			listeners = newListeners;
+			start = newStart;
+			end = newEnd;
+			milliseconds = newMilliseconds;
+			timed = newTimed;
+			grain = newGrain;
+		}
+
+		@Override
+		protected void compute()
+		{
+			if(end - start > grain)
+			{
+				int middle = (start + end) >>> 1;
+				invokeAll(new ConcurrentStepTask(world, listeners, start, middle, milliseconds, timed, grain),
+						new ConcurrentStepTask(world, listeners, middle, end, milliseconds, timed, grain));
+				return;
+			}
+
+			PhineasFrameProfiler profiler = PhineasFrameProfiler.getInstance();
+			PhineasWorld previous = enter(world);
+			long listenerStart;
+			try
+			{
+				for(int i = start; i < end; i++)
+				{
+					if(GameModelManager.isDormant(listeners[i]))
+						continue;
+					if(timed)
+					{
+						listenerStart = System.nanoTime();
+						listeners[i].onStep(milliseconds);
+						profiler.recordListener(listeners[i], System.nanoTime() - listenerStart);
+					}
+					else
+						listeners[i].onStep(milliseconds);
+				}
+			}
+			finally
+			{
+				exit(previous);
+			}
+		}
+	}
+
+	/**
+	 * Get the world the rest of the framework's singletons belong to
+	 * @return Shared default world
+	 */
+	public static PhineasWorld getDefault()
+	{
+		if(defaultWorld == null)
+		{
+			defaultWorld = new PhineasWorld(GameModelManager.getInstance(), GameEntityActionStager.getInstance(),
+					PhineasScheduler.getInstance(), PhineasScriptRunner.getInstance());
+		}
+		return defaultWorld;
+	}
+	
+	/**
+	 * Get the world whose step, drawing or input the calling code is running
+	 * in, like the world a step listener, timer, script or drawable belongs to
+	 * @return The world being stepped or drawn on this thread, or the default
+	 *         world if none is
+	 */
+	public static PhineasWorld getCurrent()
+	{
+		PhineasWorld world = current.get();
+		return world == null ? getDefault() : world;
+	}
+	
+	/**
+	 * Get the world being stepped on this thread without falling back to the
+	 * default world
+	 * @return The world being stepped or null if none is
+	 */
+	static PhineasWorld getStepping()
+	{
+		return current.get();
+	}
+	
+	/**
+	 * Make a world current on this thread
+	 * @param world The world to make current
+	 * @return The world that was current before, to hand to exit
+	 */
+	static PhineasWorld enter(PhineasWorld world)
+	{
+		PhineasWorld previous = current.get();
+		current.set(world);
+		return previous;
+	}
+	
+	/**
+	 * Restore the world that was current before enter
+	 * @param previous The value enter returned
+	 */
+	static void exit(PhineasWorld previous)
+	{
+		if(previous == null)
+			current.remove();
+		else
+			current.set(previous);
+	}
+
+	/**
+	 * Creates a new empty world
+	 */
+	public PhineasWorld()
+	{
+		this(new GameModelManager(), new GameEntityActionStager(), new PhineasScheduler(),
+				new PhineasScriptRunner());
+	}
+
+	private PhineasWorld(GameModelManager newModelManager, GameEntityActionStager newStager,
+			PhineasScheduler newScheduler, PhineasScriptRunner newScriptRunner)
+	{
+		modelManager = newModelManager;
+		stager = newStager;
+		scheduler = newScheduler;
+		scriptRunner = newScriptRunner;
+		scriptRunner.world = this;
+	}
+
+	/**
+	 * Adds the given entity to this world in all the ways it possibly can
+	 * given the interfaces the entity implements (on the next step)
+	 * @param targetEntity The entity to add
+	 */
+	public void addEntity(Object targetEntity)
+	{
+		stager.addEntity(targetEntity);
+	}
+
+	/**
+	 * Removes the given entity from this world in all the ways it possibly
+	 * can given the interfaces the entity implements (on the next step)
+	 * @param targetEntity The entity to remove
+	 */
+	public void removeEntity(Object targetEntity)
+	{
+		stager.removeEntity(targetEntity);
+	}
+
+	/**
+	 * Get the scheduler running timers on this world's clock
+	 * @return This world's scheduler
+	 */
+	public PhineasScheduler getScheduler()
+	{
+		return scheduler;
+	}
+
+	/**
+	 * Get the runner resuming scripts on this world's clock
+	 * @return This world's script runner
+	 */
+	public PhineasScriptRunner getScriptRunner()
+	{
+		return scriptRunner;
+	}
+
+	/**
+	 * Get this world's clock
+	 * @return Sum of all step deltas this world has seen in milliseconds
+	 */
+	public long getGameTime()
+	{
+		return gameTime;
+	}
+
+	/**
+	 * Advance this world by one step on the calling thread without drawing.
+	 * A world must not be stepped by two threads at once.
+	 * @param milliseconds The number of milliseconds since the last step
+	 */
+	public void step(long milliseconds)
+	{
+		update(milliseconds, null);
+	}
+
+	/**
+	 * Step this world without a window at a fixed rate on the given executor.
+	 * Each step advances the clock by exactly one frame's worth of time, so
+	 * headless runs are repeatable.
+	 * @param executor Pool to step on, which may be shared by many worlds
+	 * @param fps The number of steps per second (1 to 1000)
+	 * @throws PhineasException Thrown if fps is out of range or this world is
+	 *                          already running headless
+	 */
+	public synchronized void startHeadless(ScheduledExecutorService executor, int fps) throws PhineasException
+	{
+		// Frames are whole milliseconds, so faster rates would step by zero
+		if(fps < 1 || fps > MILLISECONDS_PER_SECOND)
+			throw new PhineasException("FPS must be between 1 and " + MILLISECONDS_PER_SECOND + ": " + fps);
+		if(headlessLoop != null)
+			throw new PhineasException("World is already running");
+
+		final long frameMillis = MILLISECONDS_PER_SECOND / fps;
+		headlessLoop = executor.scheduleAtFixedRate(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				// The executor drops a task that throws without a word
+				try
+				{
+					step(frameMillis);
+				}
+				catch(RuntimeException e)
+				{
+					e.printStackTrace();
+					throw e;
+				}
+			}
+		}, 0, frameMillis, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Stop stepping this world on its executor. Does nothing if it is not
+	 * running headless.
+	 */
+	public synchronized void stopHeadless()
+	{
+		if(headlessLoop == null)
+			return;
+		headlessLoop.cancel(false);
+		headlessLoop = null;
+	}
+
+	/**
+	 * Determine if this world is being stepped on an executor
+	 * @return true if startHeadless was called without a later stopHeadless
+	 */
+	public synchronized boolean isRunningHeadless()
+	{
+		return headlessLoop != null;
+	}
+
+	/**
+	 * Get this world's entity registries
+	 * @return This world's model
+	 */
+	GameModelManager getModelManager()
+	{
+		return modelManager;
+	}
+
+	/**
+	 * Get this world's entity action stager
+	 * @return Stager for adds, removes and activation changes
+	 */
+	GameEntityActionStager getStager()
+	{
+		return stager;
+	}
+
+	/**
+	 * Apply staged actions, fire timers, resume scripts and step every step
+	 * listener
+	 * @param milliseconds The number of milliseconds since the last step
+	 * @param profiler Profiler to record the STAGING and STEP phases to, or
+	 *                 null to skip profiling
+	 */
+	void update(long milliseconds, PhineasFrameProfiler profiler)
+	{
+		boolean profiling = profiler != null;
+		boolean timingListeners = profiling && profiler.isListenerTimingEnabled();
+		long phaseStart = profiling ? System.nanoTime() : 0;
+		long now;
+
+		PhineasWorld previous = enter(this);
+		try
+		{
+			gameTime += milliseconds;
+
+			stager.completeAllStagedActions(modelManager);
+			if(profiling)
+			{
+				now = System.nanoTime();
+				profiler.record(PhineasFrameProfiler.Phase.STAGING, now - phaseStart);
+				phaseStart = now;
+			}
+
+			// Fire timers and resume scripts whose wait is over
+			scheduler.advance(gameTime);
+			scriptRunner.resumeDue(gameTime);
+
+			// Update those that are listening for the step event
+			if(timingListeners)
+			{
+				long listenerStart;
+				for(PhineasStepListener listener : modelManager.getStepListeners())
+				{
+					if(GameModelManager.isDormant(listener))
+						continue;
+					listenerStart = System.nanoTime();
+					listener.onStep(milliseconds);
+					profiler.recordListener(listener, System.nanoTime() - listenerStart);
+				}
+			}
+			else
+			{
+				for(PhineasStepListener listener : modelManager.getStepListeners())
+				{
+					if(!GameModelManager.isDormant(listener))
+						listener.onStep(milliseconds);
+				}
+			}
+
+			// Then everything that declared it can run alongside the others, waiting
+			// for all of them before drawing
+			concurrentListeners = modelManager.getConcurrentStepListeners(concurrentListeners);
+			int concurrentCount = 0;
+			while(concurrentCount < concurrentListeners.length && concurrentListeners[concurrentCount] != null)
+				concurrentCount++;
+			if(concurrentCount > 0)
+			{
+				ForkJoinPool.commonPool().invoke(new ConcurrentStepTask(this, concurrentListeners, 0, concurrentCount,
+						milliseconds, timingListeners,
+						Math.max(1, concurrentCount / (ForkJoinPool.getCommonPoolParallelism() * 4))));
+			}
+
+			// Don't hold on to listeners left over from a longer list
+			for(int i = concurrentCount + 1; i < concurrentListeners.length && concurrentListeners[i] != null; i++)
+				concurrentListeners[i] = null;
+			if(timingListeners)
+				profiler.endListenerFrame();
+			if(profiling)
+				profiler.record(PhineasFrameProfiler.Phase.STEP, System.nanoTime() - phaseStart);
+		}
+		finally
+		{
+			exit(previous);
+		}
+	}
+
+	/**
+	 * Send a key press to this world's key listeners
+	 * @param e The key event
+	 */
+	void keyPressed(KeyEvent e)
+	{
+		PhineasWorld previous = enter(this);
+		try
+		{
+			for(PhineasKeyListener listener : modelManager.getKeyListeners())
+			{
+				if(!GameModelManager.isDormant(listener))
+					listener.keyPressed(e);
+			}
+		}
+		finally
+		{
+			exit(previous);
+		}
+	}
+
+	/**
+	 * Send a key release to this world's key listeners
+	 * @param e The key event
+	 */
+	void keyReleased(KeyEvent e)
+	{
+		PhineasWorld previous = enter(this);
+		try
+		{
+			for(PhineasKeyListener listener : modelManager.getKeyListeners())
+			{
+				if(!GameModelManager.isDormant(listener))
+					listener.keyReleased(e);
+			}
+		}
+		finally
+		{
+			exit(previous);
+		}
+	}
+
+	/**
+	 * Send a left button press to this world's click listeners
+	 * @param mouseX The x position of the mouse
+	 * @param mouseY The y position of the mouse
+	 */
+	void leftDown(int mouseX, int mouseY)
+	{
+		BoundableHelper helper = BoundableHelper.getInstance();
+		PhineasWorld previous = enter(this);
+		try
+		{
+			// Respond to global listeners
+			for(PhineasGlobalClickListener listener : modelManager.getGlobalClickListeners())
+			{
+				if(!GameModelManager.isDormant(listener))
+					listener.onGlobalLeftDown(mouseX, mouseY);
+			}
+
+			// Respond to object only listeners
+			for(PhineasClickListener listener : modelManager.getClickListeners())
+			{
+				if(!GameModelManager.isDormant(listener) && helper.isInBounds(listener, mouseX, mouseY))
+					listener.onLeftDown(mouseX - listener.getX(), mouseY - listener.getY());
+			}
+		}
+		finally
+		{
+			exit(previous);
+		}
+	}
+
+	/**
+	 * Send a left button release to this world's click listeners
+	 * @param mouseX The x position of the mouse
+	 * @param mouseY The y position of the mouse
+	 */
+	void leftRelease(int mouseX, int mouseY)
+	{
+		BoundableHelper helper = BoundableHelper.getInstance();
+		PhineasWorld previous = enter(this);
+		try
+		{
+			// Respond to global listeners
+			for(PhineasGlobalClickListener listener : modelManager.getGlobalClickListeners())
+			{
+				if(!GameModelManager.isDormant(listener))
+					listener.onGlobalLeftRelease(mouseX, mouseY);
+			}
+
+			// Respond to object only listeners
+			for(PhineasClickListener listener : modelManager.getClickListeners())
+			{
+				if(!GameModelManager.isDormant(listener) && helper.isInBounds(listener, mouseX, mouseY))
+					listener.onLeftRelease(mouseX - listener.getX(), mouseY - listener.getY());
+			}
+		}
+		finally
+		{
+			exit(previous);
+		}
+	}
+
+	/**
+	 * Send a mouse move to this world's mouse movement and hover listeners
+	 * @param mouseX The new x position of the mouse
+	 * @param mouseY The new y position of the mouse
+	 */
+	void mouseMoved(int mouseX, int mouseY)
+	{
+		BoundableHelper helper = BoundableHelper.getInstance();
+		PhineasWorld previous = enter(this);
+		try
+		{
+			// Respond to global listeners
+			for(PhineasGlobalMouseMovementListener listener : modelManager.getGlobalMouseMovementListeners())
+			{
+				if(!GameModelManager.isDormant(listener))
+					listener.onMouseMove(mouseX, mouseY);
+			}
+
+			// Check for hovering
+			for(PhineasHoverListenerNanny listener : modelManager.getDecoratedHoverListeners())
+			{
+				if(GameModelManager.isDormant(listener.getInnerListener()))
+					continue;
+				if(helper.isInBounds(listener, mouseX, mouseY))
+					listener.reportMouseIn();
+				else
+					listener.reportMouseOut();
+			}
+		}
+		finally
+		{
+			exit(previous);
+		}
+	}
+
+	/**
+	 * Send a scroll wheel move to this world's scroll wheel listeners
+	 * @param rotation The number of notches the wheel moved
+	 */
+	void mouseWheelMoved(int rotation)
+	{
+		PhineasWorld previous = enter(this);
+		try
+		{
+			for(PhineasScrollWheelListener listener : modelManager.getMouseScrollListeners())
+			{
+				if(!GameModelManager.isDormant(listener))
+					listener.onWheelMove(rotation);
+			}
+		}
+		finally
+		{
+			exit(previous);
+		}
+	}
+}